@@ -0,0 +1,338 @@
+package com.example.playerhighlight;
+
+import net.minecraft.util.math.Vec3d;
+
+import java.util.Arrays;
+
+/**
+ * 批量轨迹模拟器（结构化数组 / SoA）
+ *
+ * 同一 tick 内出现的多个弹道（箭雨、发射器齐射、刷怪塔）一起逐 tick 推进：
+ * 位置、速度与物理参数分别存放在 x/y/z/vx/vy/vz 等原始数组中，
+ * 运动与阻力更新是对连续数组的简单循环（便于 JIT 自动向量化），射线检测仍逐条执行。
+ * 命中方块或到达最大模拟时间的弹道立即退出，并与末尾的活动弹道交换以保持数组紧凑。
+ *
+ * 每条弹道的运算顺序（包括粗步进跳过检测的判定）与 PhysicsSimulator.simulate 完全相同，因此结果逐位一致；
+ * 与逐个模拟相比，只创建一次碰撞视图与临时数组，轨迹缓冲区也在多次批量之间复用。
+ *
+ * 只作为 BurstBenchmark 的对比基线，放在 jmh 源码集中，不随模组发布：
+ * 它比逐个调用 PhysicsSimulator.simulate 慢约 1.6 倍，且一次批量只能占用一个工作线程，
+ * 没有达到降低齐射中单个弹道开销的目标；追踪器把齐射的各条预测逐个提交到 PredictionExecutor 并行执行。
+ * 修改 PhysicsSimulator 的粗步进/地形判定时需同步修改此类（逐位一致是 BurstBenchmark 对比的前提）。
+ *
+ * 不检查地形是否就绪（CollisionWorld#isResident）：只在内存体素网格上使用。
+ *
+ * 非线程安全：每个线程持有自己的实例。
+ */
+public final class BatchSimulator {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 活动弹道（下标 0..activeCount-1，退出时与末尾交换）
+    private int[] lane = new int[INITIAL_CAPACITY];  // 槽位 -> 任务下标
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] z = new double[INITIAL_CAPACITY];
+    private double[] vx = new double[INITIAL_CAPACITY];
+    private double[] vy = new double[INITIAL_CAPACITY];
+    private double[] vz = new double[INITIAL_CAPACITY];
+    private double[] nextX = new double[INITIAL_CAPACITY];
+    private double[] nextY = new double[INITIAL_CAPACITY];
+    private double[] nextZ = new double[INITIAL_CAPACITY];
+    private double[] gravity = new double[INITIAL_CAPACITY];
+    private double[] drag = new double[INITIAL_CAPACITY];
+    private double[] tickDrag = new double[INITIAL_CAPACITY];
+    private boolean[] retired = new boolean[INITIAL_CAPACITY];
+    private int[] clearTicks = new int[INITIAL_CAPACITY];
+    private int[] nextCoarseAttempt = new int[INITIAL_CAPACITY];
+    private boolean[] clear = new boolean[INITIAL_CAPACITY];  // 本 tick 是否跳过检测
+
+    // 按任务下标保存的结果
+    private double[] landX = new double[INITIAL_CAPACITY];
+    private double[] landY = new double[INITIAL_CAPACITY];
+    private double[] landZ = new double[INITIAL_CAPACITY];
+    private int[] ticksSimulated = new int[INITIAL_CAPACITY];
+    private boolean[] hitBlock = new boolean[INITIAL_CAPACITY];
+    private int[] hitEntityId = new int[INITIAL_CAPACITY];
+    private String[] hitEntityName = new String[INITIAL_CAPACITY];
+    private TrajectoryBuffer[] trajectories = new TrajectoryBuffer[0];
+
+    private final double[] hit = new double[3];
+    private final double[] entityHit = new double[3];
+
+    /**
+     * 批量模拟
+     *
+     * @param jobs 预测任务（必须来自同一个碰撞世界，即同一世界同一 tick 捕获）
+     * @return 与 jobs 下标一一对应的预测结果
+     */
+    public ProjectilePrediction[] simulate(PredictionJob[] jobs) {
+        long startTime = System.nanoTime();
+        int count = jobs.length;
+        ProjectilePrediction[] results = new ProjectilePrediction[count];
+        if (count == 0) {
+            return results;
+        }
+
+        CollisionWorld.Provider world = jobs[0].collision;
+        ensureCapacity(count);
+
+        int maxTicks = 0;
+        for (int i = 0; i < count; i++) {
+            PredictionJob job = jobs[i];
+            if (job.collision != world) {
+                throw new IllegalArgumentException("Batched jobs must share one collision world");
+            }
+            lane[i] = i;
+            x[i] = job.posX;
+            y[i] = job.posY;
+            z[i] = job.posZ;
+            vx[i] = job.velX;
+            vy[i] = job.velY;
+            vz[i] = job.velZ;
+            gravity[i] = job.gravity;
+            drag[i] = job.drag;
+            retired[i] = false;
+            clearTicks[i] = 0;
+            nextCoarseAttempt[i] = job.coarseStepping ? 0 : Integer.MAX_VALUE;
+
+            landX[i] = job.posX;
+            landY[i] = job.posY;
+            landZ[i] = job.posZ;
+            ticksSimulated[i] = 0;
+            hitBlock[i] = false;
+            hitEntityId[i] = -1;
+            hitEntityName[i] = null;
+
+            TrajectoryBuffer trajectory = trajectories[i];
+            trajectory.clear();
+            trajectory.ensureCapacity((job.maxTicks / PhysicsSimulator.trajectorySaveInterval(job)) + 3);
+            trajectory.add(job.posX, job.posY, job.posZ, 0);
+            maxTicks = Math.max(maxTicks, job.maxTicks);
+        }
+
+        CollisionWorld collision = world.open();
+        int activeCount = count;
+
+        for (int tick = 0; tick < maxTicks && activeCount > 0; tick++) {
+            int ticksNow = tick + 1;
+
+            // 1. 到达各自最大模拟时间的弹道退出
+            for (int i = 0; i < activeCount; i++) {
+                if (tick >= jobs[lane[i]].maxTicks) {
+                    retire(i, false);
+                }
+            }
+
+            // 粗步进：包围盒确认无碰撞/流体的一段内跳过检测
+            for (int i = 0; i < activeCount; i++) {
+                if (retired[i]) {
+                    continue;
+                }
+                if (clearTicks[i] == 0 && tick >= nextCoarseAttempt[i]) {
+                    PredictionJob job = jobs[lane[i]];
+                    clearTicks[i] = PhysicsSimulator.findClearWindow(collision, x[i], y[i], z[i], vx[i], vy[i], vz[i],
+                            gravity[i], drag[i], job.simulateFluidDrag, job.maxTicks - tick);
+                    if (clearTicks[i] == 0) {
+                        nextCoarseAttempt[i] = tick + PhysicsSimulator.COARSE_RETRY_TICKS;
+                    }
+                }
+                clear[i] = clearTicks[i] > 0;
+                if (clear[i]) {
+                    clearTicks[i]--;
+                }
+            }
+
+            // 2. 候选位置（纯数组运算）
+            for (int i = 0; i < activeCount; i++) {
+                nextX[i] = x[i] + vx[i];
+                nextY[i] = y[i] + vy[i];
+                nextZ[i] = z[i] + vz[i];
+            }
+
+            // 线段高于经过的所有列的地形时同样跳过检测
+            for (int i = 0; i < activeCount; i++) {
+                if (!retired[i] && !clear[i]) {
+                    clear[i] = PhysicsSimulator.isSegmentAboveTerrain(collision,
+                            x[i], y[i], z[i], nextX[i], nextY[i], nextZ[i]);
+                }
+            }
+
+            // 3. 射线检测（玩家命中优先）；未命中则前进并按间隔保存轨迹点
+            for (int i = 0; i < activeCount; i++) {
+                if (retired[i]) {
+                    continue;
+                }
+                int job = lane[i];
+                ticksSimulated[job] = ticksNow;
+                boolean blockHit = !clear[i] && tick % PhysicsSimulator.RAYCAST_INTERVAL == 0
+                        && collision.raycast(x[i], y[i], z[i], nextX[i], nextY[i], nextZ[i], hit);
+
+                PlayerSpatialHash players = jobs[job].players;
+                int hitPlayer = blockHit
+                        ? players.raycast(x[i], y[i], z[i], hit[0], hit[1], hit[2], jobs[job].excludedEntityId, entityHit)
+                        : players.raycast(x[i], y[i], z[i], nextX[i], nextY[i], nextZ[i], jobs[job].excludedEntityId, entityHit);
+                if (hitPlayer >= 0) {
+                    x[i] = entityHit[0];
+                    y[i] = entityHit[1];
+                    z[i] = entityHit[2];
+                    hitEntityId[job] = players.getEntityId(hitPlayer);
+                    hitEntityName[job] = players.getName(hitPlayer);
+                    trajectories[job].add(x[i], y[i], z[i], ticksNow);
+                    retire(i, false);
+                    continue;
+                }
+
+                if (blockHit) {
+                    x[i] = hit[0];
+                    y[i] = hit[1];
+                    z[i] = hit[2];
+                    trajectories[job].add(x[i], y[i], z[i], ticksNow);
+                    retire(i, true);
+                    continue;
+                }
+
+                x[i] = nextX[i];
+                y[i] = nextY[i];
+                z[i] = nextZ[i];
+                if (tick % PhysicsSimulator.trajectorySaveInterval(jobs[job]) == 0) {
+                    trajectories[job].add(x[i], y[i], z[i], ticksNow);
+                }
+            }
+
+            // 4. 本 tick 的阻力（流体中的箭使用水中阻力）
+            for (int i = 0; i < activeCount; i++) {
+                tickDrag[i] = drag[i];
+            }
+            for (int i = 0; i < activeCount; i++) {
+                if (!retired[i] && !clear[i]) {
+                    PredictionJob job = jobs[lane[i]];
+                    if (job.simulateFluidDrag && collision.isInFluid(x[i], y[i], z[i])) {
+                        tickDrag[i] = job.fluidDrag;
+                    }
+                }
+            }
+
+            // 5. 速度更新（纯数组运算）
+            for (int i = 0; i < activeCount; i++) {
+                double d = tickDrag[i];
+                vx[i] *= d;
+                vy[i] = vy[i] * d - gravity[i];
+                vz[i] *= d;
+            }
+
+            // 6. 低速贴地检测
+            for (int i = 0; i < activeCount; i++) {
+                if (retired[i] || clear[i]) {
+                    continue;
+                }
+                double speedSq = vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i];
+                if (speedSq < PhysicsSimulator.MIN_VELOCITY_SQUARED
+                        && PhysicsSimulator.trySnapToNearbyGround(collision, x[i], y[i], z[i], hit)) {
+                    x[i] = hit[0];
+                    y[i] = hit[1];
+                    z[i] = hit[2];
+                    trajectories[lane[i]].add(x[i], y[i], z[i], ticksNow);
+                    retire(i, false);
+                }
+            }
+
+            // 7. 压缩：已退出的槽位用末尾的活动弹道填补
+            for (int i = 0; i < activeCount; ) {
+                if (retired[i]) {
+                    activeCount--;
+                    moveSlot(activeCount, i);
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        // 到达最大模拟时间仍在飞行的弹道
+        for (int i = 0; i < activeCount; i++) {
+            retire(i, false);
+        }
+
+        for (int i = 0; i < count; i++) {
+            trajectories[i].simplify(jobs[i].simplifyTolerance);
+        }
+
+        // 批量耗时平均分摊到每条弹道
+        long calculationTime = (System.nanoTime() - startTime) / count;
+        for (int i = 0; i < count; i++) {
+            TrajectoryBuffer trajectory = trajectories[i];
+            results[i] = new ProjectilePrediction(
+                    new Vec3d(landX[i], landY[i], landZ[i]),
+                    ticksSimulated[i],
+                    trajectory.toPackedArray(),
+                    trajectory.toTickArray(),
+                    hitBlock[i],
+                    hitEntityId[i],
+                    hitEntityName[i],
+                    calculationTime
+            );
+        }
+        return results;
+    }
+
+    private void retire(int slot, boolean hitBlockNow) {
+        int job = lane[slot];
+        landX[job] = x[slot];
+        landY[job] = y[slot];
+        landZ[job] = z[slot];
+        hitBlock[job] = hitBlockNow;
+        retired[slot] = true;
+    }
+
+    private void moveSlot(int from, int to) {
+        lane[to] = lane[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        z[to] = z[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        vz[to] = vz[from];
+        gravity[to] = gravity[from];
+        drag[to] = drag[from];
+        retired[to] = retired[from];
+        clearTicks[to] = clearTicks[from];
+        nextCoarseAttempt[to] = nextCoarseAttempt[from];
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > lane.length) {
+            int capacity = Math.max(count, lane.length * 2);
+            lane = Arrays.copyOf(lane, capacity);
+            x = new double[capacity];
+            y = new double[capacity];
+            z = new double[capacity];
+            vx = new double[capacity];
+            vy = new double[capacity];
+            vz = new double[capacity];
+            nextX = new double[capacity];
+            nextY = new double[capacity];
+            nextZ = new double[capacity];
+            gravity = new double[capacity];
+            drag = new double[capacity];
+            tickDrag = new double[capacity];
+            retired = new boolean[capacity];
+            clearTicks = new int[capacity];
+            nextCoarseAttempt = new int[capacity];
+            clear = new boolean[capacity];
+            landX = new double[capacity];
+            landY = new double[capacity];
+            landZ = new double[capacity];
+            ticksSimulated = new int[capacity];
+            hitBlock = new boolean[capacity];
+            hitEntityId = new int[capacity];
+            hitEntityName = new String[capacity];
+        }
+        if (count > trajectories.length) {
+            int oldLength = trajectories.length;
+            trajectories = Arrays.copyOf(trajectories, Math.max(count, lane.length));
+            for (int i = oldLength; i < trajectories.length; i++) {
+                trajectories[i] = new TrajectoryBuffer();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.playerhighlight.benchmark;
+
+import com.example.playerhighlight.PredictionJob;
+import com.example.playerhighlight.VoxelGridWorld;
+
+import java.util.Random;
+
+/**
+ * 基准测试用的合成竞技场与箭矢发射参数
+ *
+ * 除深谷外所有布局都建在同一尺寸的 VoxelGridWorld 上（地面顶面 y = 64），随机地形使用固定种子，
+ * 每次运行的地形与发射方向完全相同，结果可以跨版本对比。
+ */
+final class BenchmarkArenas {
+    private BenchmarkArenas() {
+    }
+
+    // 原版箭矢参数（与 ModConfig 的默认值一致）
+    static final double ARROW_GRAVITY = 0.05;
+    static final double ARROW_DRAG = 0.99;
+    static final double ARROW_WATER_DRAG = 0.6;
+    static final double FULL_DRAW_SPEED = 3.0;
+    static final int MAX_TICKS = 300;
+
+    static final int GROUND_Y = 64;
+    private static final int HALF_SIZE = 160;
+    private static final int HEIGHT = 128;
+    private static final int DROP_HALF_SIZE = 96;
+    private static final int FLOOR_THICKNESS = 4;
+    private static final long TERRAIN_SEED = 0x5EEDL;
+
+    /**
+     * 平坦地面
+     */
+    static VoxelGridWorld flat() {
+        VoxelGridWorld world = emptyArena();
+        world.fillSolid(-HALF_SIZE, GROUND_Y - FLOOR_THICKNESS, -HALF_SIZE,
+                HALF_SIZE - 1, GROUND_Y - 1, HALF_SIZE - 1);
+        return world;
+    }
+
+    /**
+     * 平坦地面上以原点为中心的水池（深 depth 格，边长 2 * radius，四周与池底为完整方块）
+     */
+    static VoxelGridWorld waterPool(int radius, int depth) {
+        VoxelGridWorld world = flat();
+        world.fillSolid(-radius - 1, GROUND_Y - depth - 1, -radius - 1, radius, GROUND_Y - 1, radius);
+        for (int x = -radius; x < radius; x++) {
+            for (int z = -radius; z < radius; z++) {
+                for (int y = GROUND_Y - depth; y < GROUND_Y; y++) {
+                    world.setBlock(x, y, z, false, true);
+                }
+            }
+        }
+        return world;
+    }
+
+    /**
+     * 平坦地面上随机分布的柱子（每列以 density 的概率出现，高 1~maxHeight 格）
+     */
+    static VoxelGridWorld dense(double density, int maxHeight) {
+        VoxelGridWorld world = flat();
+        Random random = new Random(TERRAIN_SEED);
+        for (int x = -HALF_SIZE; x < HALF_SIZE; x++) {
+            for (int z = -HALF_SIZE; z < HALF_SIZE; z++) {
+                if (random.nextDouble() < density) {
+                    int height = 1 + random.nextInt(maxHeight);
+                    world.fillSolid(x, GROUND_Y, z, x, GROUND_Y + height - 1, z);
+                }
+            }
+        }
+        return world;
+    }
+
+    /**
+     * 虚空中的小岛（空岛战争）：没有地面，只有以原点为中心、边长 2 * radius 的平台，
+     * 射出平台的箭一直下落到 MAX_TICKS（网格外按空气处理）
+     */
+    static VoxelGridWorld skyIsland(int radius) {
+        VoxelGridWorld world = emptyArena();
+        world.fillSolid(-radius, GROUND_Y - FLOOR_THICKNESS, -radius, radius - 1, GROUND_Y - 1, radius - 1);
+        return world;
+    }
+
+    /**
+     * 深谷：与 skyIsland 相同的平台（顶面 y = 64），正下方 depth 格处是谷底
+     *
+     * 网格只覆盖平台到谷底之间（水平边长 2 * DROP_HALF_SIZE），高吊射的箭飞出网格顶部后按空气处理。
+     */
+    static VoxelGridWorld deepDrop(int radius, int depth) {
+        int floorY = GROUND_Y - depth;
+        VoxelGridWorld world = new VoxelGridWorld(-DROP_HALF_SIZE, floorY - FLOOR_THICKNESS, -DROP_HALF_SIZE,
+                DROP_HALF_SIZE * 2, depth + FLOOR_THICKNESS, DROP_HALF_SIZE * 2);
+        world.fillSolid(-DROP_HALF_SIZE, floorY - FLOOR_THICKNESS, -DROP_HALF_SIZE,
+                DROP_HALF_SIZE - 1, floorY - 1, DROP_HALF_SIZE - 1);
+        world.fillSolid(-radius, GROUND_Y - FLOOR_THICKNESS, -radius, radius - 1, GROUND_Y - 1, radius - 1);
+        return world;
+    }
+
+    /**
+     * 按原版朝向约定（yaw 0 = +Z，pitch 正值向下）创建一次箭矢发射
+     *
+     * @param fluidDrag 流体中的阻力；NaN 表示不模拟流体阻力
+     */
+    static PredictionJob shot(VoxelGridWorld world, double x, double y, double z,
+                              double yawDegrees, double pitchDegrees, double fluidDrag) {
+        return shot(world, x, y, z, yawDegrees, pitchDegrees, fluidDrag, true, 0.0);
+    }
+
+    /**
+     * 同上，并指定粗步进与轨迹简化容差
+     */
+    static PredictionJob shot(VoxelGridWorld world, double x, double y, double z,
+                              double yawDegrees, double pitchDegrees, double fluidDrag,
+                              boolean coarseStepping, double simplifyTolerance) {
+        double yaw = Math.toRadians(yawDegrees);
+        double pitch = Math.toRadians(pitchDegrees);
+        double horizontal = Math.cos(pitch) * FULL_DRAW_SPEED;
+        return PredictionJob.headless(
+                x, y, z,
+                -Math.sin(yaw) * horizontal,
+                -Math.sin(pitch) * FULL_DRAW_SPEED,
+                Math.cos(yaw) * horizontal,
+                ARROW_GRAVITY, ARROW_DRAG, fluidDrag, MAX_TICKS,
+                coarseStepping, simplifyTolerance,
+                world
+        );
+    }
+
+    private static VoxelGridWorld emptyArena() {
+        return new VoxelGridWorld(-HALF_SIZE, 0, -HALF_SIZE, HALF_SIZE * 2, HEIGHT, HALF_SIZE * 2);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.playerhighlight.benchmark;
+
+import com.example.playerhighlight.BatchSimulator;
+import com.example.playerhighlight.PhysicsSimulator;
+import com.example.playerhighlight.PredictionJob;
+import com.example.playerhighlight.ProjectilePrediction;
+import com.example.playerhighlight.TrajectoryBuffer;
+import com.example.playerhighlight.VoxelGridWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一 tick 内 50 个弹道的齐射（箭雨/发射器阵列）
+ *
+ * 对比 BatchSimulator 一次批量模拟与逐个调用 PhysicsSimulator.simulate；
+ * 两者结果逐位一致，差异只在每次调用的耗时与分配量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BurstBenchmark {
+
+    private static final int BURST_SIZE = 50;
+
+    private PredictionJob[] jobs;
+    private BatchSimulator batch;
+    private TrajectoryBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        VoxelGridWorld world = BenchmarkArenas.dense(0.15, 8);
+        jobs = new PredictionJob[BURST_SIZE];
+        for (int i = 0; i < BURST_SIZE; i++) {
+            // 发射器阵列：一排 10 个，5 排不同仰角，朝同一方向散开
+            double offset = (i % 10) - 4.5;
+            jobs[i] = BenchmarkArenas.shot(world, offset, BenchmarkArenas.GROUND_Y + 20.0, -40.0,
+                    offset * 2.0, -10.0 - (i / 10) * 8.0, Double.NaN);
+        }
+        batch = new BatchSimulator();
+        buffer = new TrajectoryBuffer();
+    }
+
+    @Benchmark
+    public ProjectilePrediction[] batched() {
+        return batch.simulate(jobs);
+    }
+
+    @Benchmark
+    public ProjectilePrediction[] sequential() {
+        ProjectilePrediction[] results = new ProjectilePrediction[jobs.length];
+        for (int i = 0; i < jobs.length; i++) {
+            results[i] = PhysicsSimulator.simulate(jobs[i], buffer);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.playerhighlight.benchmark;
+
+import com.example.playerhighlight.PhysicsSimulator;
+import com.example.playerhighlight.PredictionJob;
+import com.example.playerhighlight.ProjectilePrediction;
+import com.example.playerhighlight.TrajectoryBuffer;
+import com.example.playerhighlight.VoxelGridWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条轨迹预测（PhysicsSimulator.simulate）
+ *
+ * 每个场景预先生成 SHOT_COUNT 个不同朝向的发射，每次调用轮流取一个，避免只测到同一条路径。
+ * coarseStepping / simplifyTolerance 分别开关粗步进与轨迹折线简化，用于单独衡量两项优化的收益。
+ * Throughput 给出吞吐量，SampleTime 给出延迟分位数（p50/p90/p99/p99.9），gc profiler 给出每次调用的分配量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrajectoryBenchmark {
+
+    private static final int SHOT_COUNT = 64;  // 2 的幂，轮换下标用掩码
+
+    public enum Scenario {
+        /** 接近水平的平射，数十格内落地 */
+        FLAT,
+        /** 40°~47° 吊射，平均约 76 tick 落地 */
+        LOB,
+        /** 向下射入水池（流体阻力） */
+        WATER,
+        /** 贴着密集柱子平射（几乎每 tick 都要射线检测） */
+        DENSE,
+        /** 从虚空小岛边缘向外射出，飞满 MAX_TICKS（300 tick）不落地（长距离飞行，主要测粗步进） */
+        VOID,
+        /** 从平台上 70°~84° 高吊射，落到 350 格之下的谷底，约 207~211 tick 落地（长时间飞行后仍要找到落点） */
+        DEEP_LOB
+    }
+
+    @Param({"FLAT", "LOB", "WATER", "DENSE", "VOID", "DEEP_LOB"})
+    public Scenario scenario;
+
+    @Param({"true", "false"})
+    public boolean coarseStepping;
+
+    @Param({"0.0", "0.15"})
+    public double simplifyTolerance;
+
+    private PredictionJob[] jobs;
+    private TrajectoryBuffer buffer;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        jobs = createShots(scenario, coarseStepping, simplifyTolerance);
+        buffer = new TrajectoryBuffer();
+        next = 0;
+    }
+
+    @Benchmark
+    public ProjectilePrediction predict() {
+        PredictionJob job = jobs[next];
+        next = (next + 1) & (SHOT_COUNT - 1);
+        return PhysicsSimulator.simulate(job, buffer);
+    }
+
+    static PredictionJob[] createShots(Scenario scenario, boolean coarse, double tolerance) {
+        PredictionJob[] shots = new PredictionJob[SHOT_COUNT];
+        switch (scenario) {
+            case FLAT -> {
+                VoxelGridWorld world = BenchmarkArenas.flat();
+                for (int i = 0; i < SHOT_COUNT; i++) {
+                    shots[i] = BenchmarkArenas.shot(world, 0.0, BenchmarkArenas.GROUND_Y + 1.62, 0.0,
+                            i * (360.0 / SHOT_COUNT), -2.0 + (i & 3), Double.NaN, coarse, tolerance);
+                }
+            }
+            case LOB -> {
+                VoxelGridWorld world = BenchmarkArenas.flat();
+                for (int i = 0; i < SHOT_COUNT; i++) {
+                    shots[i] = BenchmarkArenas.shot(world, 0.0, BenchmarkArenas.GROUND_Y + 1.62, 0.0,
+                            i * (360.0 / SHOT_COUNT), -40.0 - (i & 7), Double.NaN, coarse, tolerance);
+                }
+            }
+            case WATER -> {
+                VoxelGridWorld world = BenchmarkArenas.waterPool(24, 8);
+                for (int i = 0; i < SHOT_COUNT; i++) {
+                    shots[i] = BenchmarkArenas.shot(world, 0.0, BenchmarkArenas.GROUND_Y + 12.0, 0.0,
+                            i * (360.0 / SHOT_COUNT), 20.0 + (i & 7) * 5.0, BenchmarkArenas.ARROW_WATER_DRAG,
+                            coarse, tolerance);
+                }
+            }
+            case DENSE -> {
+                VoxelGridWorld world = BenchmarkArenas.dense(0.3, 12);
+                for (int i = 0; i < SHOT_COUNT; i++) {
+                    shots[i] = BenchmarkArenas.shot(world, 0.5, BenchmarkArenas.GROUND_Y + 14.0, 0.5,
+                            i * (360.0 / SHOT_COUNT), 2.0 + (i & 3), Double.NaN, coarse, tolerance);
+                }
+            }
+            case VOID -> {
+                VoxelGridWorld world = BenchmarkArenas.skyIsland(8);
+                for (int i = 0; i < SHOT_COUNT; i++) {
+                    shots[i] = BenchmarkArenas.shot(world, 0.0, BenchmarkArenas.GROUND_Y + 1.62, 0.0,
+                            i * (360.0 / SHOT_COUNT), -10.0 - (i & 7) * 5.0, Double.NaN, coarse, tolerance);
+                }
+            }
+            case DEEP_LOB -> {
+                VoxelGridWorld world = BenchmarkArenas.deepDrop(8, 350);
+                for (int i = 0; i < SHOT_COUNT; i++) {
+                    shots[i] = BenchmarkArenas.shot(world, 0.0, BenchmarkArenas.GROUND_Y + 1.62, 0.0,
+                            i * (360.0 / SHOT_COUNT), -70.0 - (i & 7) * 2.0, Double.NaN, coarse, tolerance);
+                }
+            }
+        }
+        return shots;
+    }
+}
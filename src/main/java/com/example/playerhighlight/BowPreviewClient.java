@@ -1,12 +1,16 @@
 package com.example.playerhighlight;
 
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.BowItem;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
 
 import java.util.UUID;
 
@@ -14,6 +18,9 @@ import java.util.UUID;
  * 弓箭预瞄预测（未射出前）
  *
  * 玩家拉弓时，基于当前视角与拉弓进度预测箭矢轨迹与落点，用于 PVP 预判。
+ * 模拟在 PredictionExecutor 后台线程执行；结果返回前继续显示上一次的预测。
+ * 相同（量化后）瞄准输入的预测由 PredictionCache 缓存，来回扫视时直接复用。
+ * 启用散布显示时，另以同一初始状态提交蒙特卡洛散布计算（见 BowPreviewSpread）。
  */
 public final class BowPreviewClient {
     private BowPreviewClient() {
@@ -31,6 +38,23 @@ public final class BowPreviewClient {
     private static String lastTypeId = null;
     private static long previewInaccuracySeed = 0L;
 
+    private static final PredictionCache cache = new PredictionCache();
+
+    // 散布计算使用的最近一次瞄准（客户端线程访问）
+    private static PredictionCache.Key lastAimKey = null;
+    private static Vec3d lastStartPos = null;
+    private static Vec3d lastDirection = null;
+    private static Vec3d lastShooterAdd = null;
+    private static double lastSpeed = 0.0;
+    private static final long SPREAD_SEED_SALT = 0x5DEECE66DL;
+    private static ClientWorld cacheWorld = null;
+
+    // 异步结果发布：只接受比已显示结果更新的请求；clear() 之前提交的请求结果会被丢弃
+    private static final Object publishLock = new Object();
+    private static int requestedSequence = 0;  // 以下均受 publishLock 保护
+    private static int publishedSequence = 0;
+    private static int clearedSequence = 0;
+
     // 触发重算阈值
     private static final float EPS_YAW_PITCH = 0.25f;
     private static final float EPS_PULL = 0.01f;
@@ -40,6 +64,24 @@ public final class BowPreviewClient {
 
     public static void initialize() {
         ClientTickEvents.END_CLIENT_TICK.register(BowPreviewClient::tick);
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            if (world == cacheWorld) {
+                cache.onChunkLoad(chunk.getPos().x, chunk.getPos().z);
+            }
+        });
+    }
+
+    /**
+     * 客户端方块变化（由 WorldBlockChangeMixin 转发）：移除轨迹经过该方块的缓存预测
+     */
+    public static void onBlockChanged(World world, BlockPos pos) {
+        if (world == cacheWorld && pos != null) {
+            cache.onBlockChanged(pos);
+        }
+    }
+
+    static PredictionCache getCache() {
+        return cache;
     }
 
     private static void tick(MinecraftClient client) {
@@ -47,6 +89,10 @@ public final class BowPreviewClient {
             clear();
             return;
         }
+        if (client.world != cacheWorld) {
+            cache.clear();
+            cacheWorld = client.world;
+        }
 
         ModConfig config = ModConfig.getInstance();
         if (!config.isBowPreviewEnabled()) {
@@ -81,10 +127,11 @@ public final class BowPreviewClient {
         boolean onGround = player.isOnGround();
 
         if (!shouldRecalculate(typeId, yaw, pitch, pullProgress, pos, shooterVel, onGround)) {
+            requestSpreadIfStale(client, player, config);
             return;
         }
 
-        if (current == null) {
+        if (lastTypeId == null) {
             previewInaccuracySeed = createPreviewSeed(player.getUuid(), client.world.getTime());
         }
 
@@ -97,17 +144,42 @@ public final class BowPreviewClient {
         double addY = onGround ? 0.0 : shooterVel.y;
         Vec3d initialVel = shotDirection.multiply(speed).add(shooterVel.x, addY, shooterVel.z);
 
-        ProjectilePrediction prediction = PhysicsSimulator.predictTrajectoryFromState(
-                startPos,
-                initialVel,
+        PredictionJob job = PredictionJob.capture(
+                startPos.x, startPos.y, startPos.z,
+                initialVel.x, initialVel.y, initialVel.z,
                 typeId,
                 client.world,
                 config.getBowPreviewMaxTicks(),
-                player,
-                false
+                false,
+                player
         );
+        int sequence;
+        synchronized (publishLock) {
+            sequence = ++requestedSequence;
+        }
 
-        current = new BowPreviewState(typeId, pullProgress, startPos, initialVel, prediction);
+        long worldTime = client.world.getTime();
+        PredictionCache.Key key = PredictionCache.key(
+                typeId,
+                DynamicProjectileRegistry.getInstance().getOrCreateType(typeId).getParamsVersion(),
+                job.maxTicks,
+                job.simulateFluidDrag ? job.fluidDrag : 0.0,
+                config.isBowPreviewSimulateInaccuracy() ? previewInaccuracySeed : 0L,
+                yaw, pitch, pullProgress,
+                startPos.x, startPos.y, startPos.z,
+                shooterVel.x, shooterVel.y, shooterVel.z,
+                onGround
+        );
+        ProjectilePrediction cached = cache.get(key, worldTime);
+        if (cached != null) {
+            publish(sequence, new BowPreviewState(typeId, pullProgress, startPos, initialVel, cached));
+        } else {
+            int generation = cache.getGeneration();
+            PredictionExecutor.submit(job, prediction -> {
+                cache.put(key, prediction, generation, worldTime);
+                publish(sequence, new BowPreviewState(typeId, pullProgress, startPos, initialVel, prediction));
+            });
+        }
 
         lastTypeId = typeId;
         lastYaw = yaw;
@@ -116,6 +188,49 @@ public final class BowPreviewClient {
         lastPos = pos;
         lastShooterVel = shooterVel;
         lastOnGround = onGround;
+
+        lastAimKey = key;
+        lastStartPos = startPos;
+        lastDirection = direction;
+        lastShooterAdd = new Vec3d(shooterVel.x, addY, shooterVel.z);
+        lastSpeed = speed;
+        requestSpreadIfStale(client, player, config);
+    }
+
+    /**
+     * 散布显示：当前瞄准与已有散布结果不一致（或已有结果因预算/区块段缺样本而不是最终结果）、
+     * 且没有正在进行的散布计算时，提交新的计算
+     */
+    private static void requestSpreadIfStale(MinecraftClient client, PlayerEntity player, ModConfig config) {
+        if (!config.isBowPreviewSpreadEnabled()) {
+            BowPreviewSpread.clear();
+            return;
+        }
+        if (lastAimKey == null || BowPreviewSpread.isInFlight()) {
+            return;
+        }
+        BowPreviewSpread.SpreadState spread = BowPreviewSpread.getCurrent();
+        if (spread != null && spread.isFinal() && lastAimKey.equals(spread.aimKey)) {
+            return;
+        }
+
+        PredictionJob[] jobs = new PredictionJob[BowPreviewSpread.SAMPLE_COUNT];
+        long baseSeed = previewInaccuracySeed ^ SPREAD_SEED_SALT;
+        for (int i = 0; i < jobs.length; i++) {
+            Vec3d sampleDirection = ProjectileLaunchMath.applyDivergence(
+                    lastDirection, VANILLA_BOW_DIVERGENCE, baseSeed + i * 0x9E3779B97F4A7C15L);
+            Vec3d sampleVel = sampleDirection.multiply(lastSpeed).add(lastShooterAdd);
+            jobs[i] = PredictionJob.capture(
+                    lastStartPos.x, lastStartPos.y, lastStartPos.z,
+                    sampleVel.x, sampleVel.y, sampleVel.z,
+                    lastTypeId,
+                    client.world,
+                    config.getBowPreviewMaxTicks(),
+                    false,
+                    player
+            );
+        }
+        BowPreviewSpread.submit(jobs, lastAimKey);
     }
 
     private static long createPreviewSeed(UUID uuid, long worldTime) {
@@ -124,11 +239,17 @@ public final class BowPreviewClient {
         return u1 ^ u2 ^ worldTime ^ System.nanoTime();
     }
 
+    private static void publish(int sequence, BowPreviewState state) {
+        synchronized (publishLock) {
+            if (sequence > publishedSequence && sequence > clearedSequence) {
+                publishedSequence = sequence;
+                current = state;
+            }
+        }
+    }
+
     private static boolean shouldRecalculate(String typeId, float yaw, float pitch, float pull, Vec3d pos,
                                              Vec3d shooterVel, boolean onGround) {
-        if (current == null) {
-            return true;
-        }
         if (lastTypeId == null || !lastTypeId.equals(typeId)) {
             return true;
         }
@@ -154,7 +275,16 @@ public final class BowPreviewClient {
     }
 
     private static void clear() {
-        current = null;
+        synchronized (publishLock) {
+            clearedSequence = requestedSequence;
+            current = null;
+        }
+        BowPreviewSpread.clear();
+        lastAimKey = null;
+        lastStartPos = null;
+        lastDirection = null;
+        lastShooterAdd = null;
+        lastSpeed = 0.0;
         lastTypeId = null;
         lastYaw = Float.NaN;
         lastPitch = Float.NaN;
@@ -9,17 +9,18 @@ import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.math.Vec3d;
 import org.joml.Matrix4f;
 
-import java.util.List;
-
 /**
  * 弓箭预瞄预测渲染器
  *
- * 拉弓时绘制“未射出箭矢”的预测轨迹与落点标记。
+ * 拉弓时绘制“未射出箭矢”的预测轨迹与落点标记，启用时另绘制散布范围椭圆。
  */
 public final class BowPreviewRenderer {
     private BowPreviewRenderer() {
     }
 
+    private static final int SPREAD_ELLIPSE_SEGMENTS = 48;
+    private static final double SPREAD_ELLIPSE_LIFT = 0.05;  // 略高于落点，避免与地面重叠闪烁
+
     public static void initialize() {
         WorldRenderEvents.AFTER_ENTITIES.register(BowPreviewRenderer::render);
     }
@@ -65,7 +66,7 @@ public final class BowPreviewRenderer {
         buffer.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
 
         if (config.isBowPreviewTrajectoryEnabled()) {
-            drawTrajectoryLine(matrices, buffer, prediction.trajectoryPoints, isNear);
+            drawTrajectoryLine(matrices, buffer, prediction, isNear);
         }
         if (config.isBowPreviewLandingMarkerEnabled()) {
             float r = 1.0f;
@@ -74,6 +75,12 @@ public final class BowPreviewRenderer {
             float a = 0.85f;
             drawBox(matrices, buffer, landingPos, r, g, b, a);
         }
+        if (config.isBowPreviewSpreadEnabled()) {
+            BowPreviewSpread.SpreadState spread = BowPreviewSpread.getCurrent();
+            if (spread != null && spread.hasEllipse()) {
+                drawSpreadEllipse(matrices, buffer, spread, isNear);
+            }
+        }
 
         tessellator.draw();
 
@@ -85,19 +92,25 @@ public final class BowPreviewRenderer {
     }
 
     private static void drawTrajectoryLine(MatrixStack matrices, BufferBuilder buffer,
-                                           List<Vec3d> trajectoryPoints, boolean isNear) {
-        if (trajectoryPoints == null || trajectoryPoints.size() < 2) {
+                                           ProjectilePrediction prediction, boolean isNear) {
+        if (prediction.getPointCount() < 2) {
             return;
         }
 
         Matrix4f matrix = matrices.peek().getPositionMatrix();
-        int totalPoints = trajectoryPoints.size();
+        int totalPoints = prediction.getPointCount();
+        // 渐变按飞行时间计算（简化后的轨迹点间隔不均匀）
+        float totalTicks = Math.max(1, prediction.getPointTick(totalPoints - 1));
 
         for (int i = 0; i < totalPoints - 1; i++) {
-            Vec3d start = trajectoryPoints.get(i);
-            Vec3d end = trajectoryPoints.get(i + 1);
+            float startX = (float) prediction.getPointX(i);
+            float startY = (float) prediction.getPointY(i);
+            float startZ = (float) prediction.getPointZ(i);
+            float endX = (float) prediction.getPointX(i + 1);
+            float endY = (float) prediction.getPointY(i + 1);
+            float endZ = (float) prediction.getPointZ(i + 1);
 
-            float progress = (float) i / (totalPoints - 1);
+            float progress = prediction.getPointTick(i) / totalTicks;
 
             // 起点：更亮的青色，终点：红/黄（nearby 警告一致）
             float startR = 0.2f + progress * 0.8f;
@@ -105,19 +118,53 @@ public final class BowPreviewRenderer {
             float startB = 1.0f * (1 - progress);
             float alpha = 0.85f;
 
-            float endProgress = (float) (i + 1) / (totalPoints - 1);
+            float endProgress = prediction.getPointTick(i + 1) / totalTicks;
             float endR = 0.2f + endProgress * 0.8f;
             float endG = isNear ? (0.95f * (1 - endProgress)) : (0.95f);
             float endB = 1.0f * (1 - endProgress);
             float endAlpha = 0.85f;
 
-            buffer.vertex(matrix, (float) start.x, (float) start.y, (float) start.z)
+            buffer.vertex(matrix, startX, startY, startZ)
                     .color(startR, startG, startB, alpha).next();
-            buffer.vertex(matrix, (float) end.x, (float) end.y, (float) end.z)
+            buffer.vertex(matrix, endX, endY, endZ)
                     .color(endR, endG, endB, endAlpha).next();
         }
     }
 
+    /**
+     * 在落点高度绘制水平的散布椭圆
+     */
+    private static void drawSpreadEllipse(MatrixStack matrices, BufferBuilder buffer,
+                                          BowPreviewSpread.SpreadState spread, boolean isNear) {
+        Matrix4f matrix = matrices.peek().getPositionMatrix();
+        float r = 1.0f;
+        float g = isNear ? 0.3f : 0.75f;
+        float b = 0.1f;
+        float a = 0.8f;
+
+        // 半径过小时仍保留可见的最小尺寸
+        double major = Math.max(spread.majorRadius, 0.1);
+        double minor = Math.max(spread.minorRadius, 0.1);
+        double ux = spread.majorDirX;
+        double uz = spread.majorDirZ;
+        float y = (float) (spread.centerY + SPREAD_ELLIPSE_LIFT);
+
+        float prevX = (float) (spread.centerX + ux * major);
+        float prevZ = (float) (spread.centerZ + uz * major);
+        for (int i = 1; i <= SPREAD_ELLIPSE_SEGMENTS; i++) {
+            double angle = (Math.PI * 2.0 * i) / SPREAD_ELLIPSE_SEGMENTS;
+            double alongMajor = Math.cos(angle) * major;
+            double alongMinor = Math.sin(angle) * minor;
+            float x = (float) (spread.centerX + ux * alongMajor - uz * alongMinor);
+            float z = (float) (spread.centerZ + uz * alongMajor + ux * alongMinor);
+
+            buffer.vertex(matrix, prevX, y, prevZ).color(r, g, b, a).next();
+            buffer.vertex(matrix, x, y, z).color(r, g, b, a).next();
+            prevX = x;
+            prevZ = z;
+        }
+    }
+
     private static void drawBox(MatrixStack matrices, BufferBuilder buffer, Vec3d center,
                                 float r, float g, float b, float a) {
         Matrix4f matrix = matrices.peek().getPositionMatrix();
@@ -0,0 +1,290 @@
+package com.example.playerhighlight;
+
+import net.minecraft.util.math.Vec3d;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 弓箭预瞄的散布范围（蒙特卡洛）
+ *
+ * 以预瞄的初始状态为基础，按原版的发射随机偏移（divergence）抽取 SAMPLE_COUNT 个方向，
+ * 在 fork-join 线程池上并行模拟，用落点的水平协方差求出 2σ 椭圆，表示箭实际可能落在的区域。
+ *
+ * 整个散布必须在 TIME_BUDGET_NS 内完成：超时后尚未开始的样本直接放弃，椭圆只用已完成的样本计算。
+ * 样本耗时同时计入全局模拟预算（SimulationBudget），预算耗尽时同样停止采样，把时间留给追踪与预瞄。
+ * 同一时间只计算一个散布；瞄准不变时沿用已有的最终结果（由 BowPreviewClient 按量化的瞄准输入判断）。
+ * 因预算耗尽或路径上的区块段尚未构建而放弃了样本的结果不是最终结果（缺的往往正是远处/未加载的落点，椭圆有偏差），
+ * 先发布供显示，下一 tick 重新计算；只因 4ms 超时放弃样本时，完成 MIN_SAMPLES_FOR_FINAL 个即视为最终结果。
+ */
+public final class BowPreviewSpread {
+    private BowPreviewSpread() {
+    }
+
+    public static final int SAMPLE_COUNT = 32;
+    private static final long TIME_BUDGET_NS = 4_000_000L;  // 4ms（一个客户端 tick 的 8%）
+    private static final int LEAF_SAMPLES = 4;
+    private static final int MIN_SAMPLES_FOR_ELLIPSE = 3;
+    private static final int MIN_SAMPLES_FOR_FINAL = SAMPLE_COUNT / 2;
+    private static final double ELLIPSE_SIGMA = 2.0;
+
+    private static final AtomicInteger threadIndex = new AtomicInteger();
+    private static final ForkJoinPool pool = new ForkJoinPool(
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1)),
+            forkJoinPool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("playerhighlight-spread-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            },
+            null,
+            false
+    );
+
+    // 每个工作线程复用自己的轨迹缓冲区
+    private static final ThreadLocal<TrajectoryBuffer> buffers = ThreadLocal.withInitial(TrajectoryBuffer::new);
+
+    private static final AtomicBoolean inFlight = new AtomicBoolean();
+    private static final Object publishLock = new Object();
+    private static int requestedSequence = 0;  // 以下均受 publishLock 保护
+    private static int clearedSequence = 0;
+    private static volatile SpreadState current;
+
+    /**
+     * 提交一次散布计算（已有计算未完成时返回 false，由调用方下个 tick 重试）
+     *
+     * @param jobs 每个样本的预测任务（客户端线程捕获）
+     * @param aimKey 这些样本对应的瞄准输入（结果中原样返回，用于判断是否需要重算）
+     */
+    public static boolean submit(PredictionJob[] jobs, Object aimKey) {
+        if (jobs.length == 0 || !inFlight.compareAndSet(false, true)) {
+            return false;
+        }
+        int sequence;
+        synchronized (publishLock) {
+            sequence = ++requestedSequence;
+        }
+
+        long deadline = System.nanoTime() + TIME_BUDGET_NS;
+        try {
+            pool.execute(() -> {
+                try {
+                    double[] landings = new double[jobs.length * 3];
+                    boolean[] done = new boolean[jobs.length];
+                    AtomicBoolean deferred = new AtomicBoolean();
+                    new SampleTask(jobs, landings, done, deferred, 0, jobs.length, deadline).invoke();
+                    publish(sequence, SpreadState.fromSamples(landings, done, deferred.get(), aimKey));
+                } catch (Throwable t) {
+                    PlayerHighlightClient.LOGGER.warn("Bow preview spread failed", t);
+                } finally {
+                    inFlight.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.set(false);
+            PlayerHighlightClient.LOGGER.warn("Bow preview spread rejected", e);
+            return false;
+        }
+        return true;
+    }
+
+    public static boolean isInFlight() {
+        return inFlight.get();
+    }
+
+    public static SpreadState getCurrent() {
+        return current;
+    }
+
+    /**
+     * 清除当前散布（停止拉弓时）；之前提交的计算结果会被丢弃
+     */
+    public static void clear() {
+        synchronized (publishLock) {
+            clearedSequence = requestedSequence;
+            current = null;
+        }
+    }
+
+    private static void publish(int sequence, SpreadState state) {
+        synchronized (publishLock) {
+            if (sequence <= clearedSequence) {
+                return;
+            }
+            // 同一瞄准的重算若仍未完成且样本更少，保留已显示的结果
+            SpreadState shown = current;
+            if (!state.isFinal() && shown != null && shown.aimKey.equals(state.aimKey)
+                    && shown.completedSamples > state.completedSamples) {
+                return;
+            }
+            current = state;
+        }
+    }
+
+    /**
+     * 按样本区间二分的 fork-join 任务；叶子任务在开始每个样本前检查时间预算
+     *
+     * 因模拟预算耗尽或区块段尚未构建而放弃样本时置位 deferred（结果需要在下一 tick 重算）。
+     */
+    private static final class SampleTask extends RecursiveAction {
+        private final PredictionJob[] jobs;
+        private final double[] landings;
+        private final boolean[] done;
+        private final AtomicBoolean deferred;
+        private final int from;
+        private final int to;
+        private final long deadline;
+
+        SampleTask(PredictionJob[] jobs, double[] landings, boolean[] done, AtomicBoolean deferred,
+                   int from, int to, long deadline) {
+            this.jobs = jobs;
+            this.landings = landings;
+            this.done = done;
+            this.deferred = deferred;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SAMPLES) {
+                TrajectoryBuffer buffer = buffers.get();
+                for (int i = from; i < to; i++) {
+                    long start = System.nanoTime();
+                    if (start > deadline) {
+                        return;
+                    }
+                    if (SimulationBudget.isExhausted()) {
+                        deferred.set(true);
+                        return;
+                    }
+                    // 路径上的区块段尚未构建时（客户端线程下一 tick 构建）放弃该样本，不在工作线程上读取世界
+                    PhysicsSimulator.Progress progress = PhysicsSimulator.begin(jobs[i], buffer);
+                    boolean finished = PhysicsSimulator.advance(jobs[i], progress, Long.MAX_VALUE);
+                    SimulationBudget.charge(System.nanoTime() - start);
+                    if (!finished) {
+                        deferred.set(true);
+                        continue;
+                    }
+                    Vec3d landing = PhysicsSimulator.finish(jobs[i], progress).landingPos;
+                    landings[i * 3] = landing.x;
+                    landings[i * 3 + 1] = landing.y;
+                    landings[i * 3 + 2] = landing.z;
+                    done[i] = true;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SampleTask(jobs, landings, done, deferred, from, mid, deadline),
+                    new SampleTask(jobs, landings, done, deferred, mid, to, deadline));
+        }
+    }
+
+    /**
+     * 散布结果：落点水平分布的 2σ 椭圆（中心、两条半轴）
+     */
+    public static final class SpreadState {
+        public final Object aimKey;
+        public final int completedSamples;
+        /** 是否为该瞄准的最终结果（否则下一 tick 重新计算） */
+        private final boolean complete;
+        public final double centerX;
+        public final double centerY;
+        public final double centerZ;
+        /** 长半轴方向（单位向量，水平面）与长度 */
+        public final double majorDirX;
+        public final double majorDirZ;
+        public final double majorRadius;
+        public final double minorRadius;
+
+        private SpreadState(Object aimKey, int completedSamples, boolean complete,
+                            double centerX, double centerY, double centerZ,
+                            double majorDirX, double majorDirZ, double majorRadius, double minorRadius) {
+            this.aimKey = aimKey;
+            this.completedSamples = completedSamples;
+            this.complete = complete;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.centerZ = centerZ;
+            this.majorDirX = majorDirX;
+            this.majorDirZ = majorDirZ;
+            this.majorRadius = majorRadius;
+            this.minorRadius = minorRadius;
+        }
+
+        public boolean hasEllipse() {
+            return completedSamples >= MIN_SAMPLES_FOR_ELLIPSE;
+        }
+
+        /**
+         * 瞄准不变时是否可以一直沿用（没有因预算/区块段放弃样本，且完成了足够的样本）
+         */
+        public boolean isFinal() {
+            return complete;
+        }
+
+        /**
+         * @param deferred 是否因模拟预算耗尽或区块段尚未构建放弃了样本
+         */
+        static SpreadState fromSamples(double[] landings, boolean[] done, boolean deferred, Object aimKey) {
+            int count = 0;
+            double sumX = 0.0;
+            double sumY = 0.0;
+            double sumZ = 0.0;
+            for (int i = 0; i < done.length; i++) {
+                if (done[i]) {
+                    sumX += landings[i * 3];
+                    sumY += landings[i * 3 + 1];
+                    sumZ += landings[i * 3 + 2];
+                    count++;
+                }
+            }
+            boolean complete = !deferred && (count == done.length || count >= MIN_SAMPLES_FOR_FINAL);
+            if (count < MIN_SAMPLES_FOR_ELLIPSE) {
+                return new SpreadState(aimKey, count, complete, 0.0, 0.0, 0.0, 1.0, 0.0, 0.0, 0.0);
+            }
+
+            double meanX = sumX / count;
+            double meanY = sumY / count;
+            double meanZ = sumZ / count;
+            double xx = 0.0;
+            double xz = 0.0;
+            double zz = 0.0;
+            for (int i = 0; i < done.length; i++) {
+                if (done[i]) {
+                    double dx = landings[i * 3] - meanX;
+                    double dz = landings[i * 3 + 2] - meanZ;
+                    xx += dx * dx;
+                    xz += dx * dz;
+                    zz += dz * dz;
+                }
+            }
+            xx /= count - 1;
+            xz /= count - 1;
+            zz /= count - 1;
+
+            // 2x2 对称矩阵的特征值/特征向量
+            double halfTrace = (xx + zz) * 0.5;
+            double offset = Math.sqrt(Math.max(0.0, (xx - zz) * (xx - zz) * 0.25 + xz * xz));
+            double majorVariance = halfTrace + offset;
+            double minorVariance = Math.max(0.0, halfTrace - offset);
+            double angle = 0.5 * Math.atan2(2.0 * xz, xx - zz);
+
+            return new SpreadState(
+                    aimKey,
+                    count,
+                    complete,
+                    meanX, meanY, meanZ,
+                    Math.cos(angle), Math.sin(angle),
+                    ELLIPSE_SIGMA * Math.sqrt(majorVariance),
+                    ELLIPSE_SIGMA * Math.sqrt(minorVariance)
+            );
+        }
+    }
+}
@@ -4,8 +4,11 @@ import com.mojang.brigadier.arguments.StringArgumentType;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
 import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.client.MinecraftClient;
 import net.minecraft.text.Text;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -16,9 +19,23 @@ public final class BowStatusCommand {
     private BowStatusCommand() {
     }
 
+    private static final int RAYCAST_CHECK_SAMPLES = 20000;
+
     public static void register() {
         ClientCommandRegistrationCallback.EVENT.register((dispatcher, registryAccess) -> dispatcher.register(
             ClientCommandManager.literal("bowstatus")
+                .then(ClientCommandManager.literal("raycheck")
+                    .then(ClientCommandManager.literal("record")
+                        .executes(ctx -> {
+                            recordLayout(ctx.getSource());
+                            return 1;
+                        })
+                    )
+                    .executes(ctx -> {
+                        runRaycastCheck(ctx.getSource());
+                        return 1;
+                    })
+                )
                 .then(ClientCommandManager.literal("reset")
                     .then(ClientCommandManager.argument("type", StringArgumentType.word())
                         .executes(ctx -> {
@@ -30,6 +47,11 @@ public final class BowStatusCommand {
                 )
                 .executes(ctx -> {
                     FabricClientCommandSource source = ctx.getSource();
+                    sendPreviewCacheStats(source);
+                    sendSimulationBudgetStats(source);
+                    sendTrackerStats(source);
+                    sendSetupQueueStats(source);
+
                     DynamicProjectileRegistry registry = DynamicProjectileRegistry.getInstance();
                     Map<String, DynamicProjectileRegistry.ProjectileTypeData> types = registry.getRegisteredTypesSnapshot();
 
@@ -61,6 +83,86 @@ public final class BowStatusCommand {
         ));
     }
 
+    private static void sendPreviewCacheStats(FabricClientCommandSource source) {
+        PredictionCache cache = BowPreviewClient.getCache();
+        long hits = cache.getHits();
+        long lookups = hits + cache.getMisses();
+        double hitRate = lookups > 0 ? hits * 100.0 / lookups : 0.0;
+        source.sendFeedback(Text.translatable("playerhighlight.bowstatus.preview_cache",
+                String.valueOf(cache.size()),
+                String.valueOf(cache.getCapacity()),
+                String.valueOf(hits),
+                String.valueOf(lookups),
+                String.format("%.1f", hitRate),
+                String.valueOf(cache.getEvictions())));
+    }
+
+    private static void sendSimulationBudgetStats(FabricClientCommandSource source) {
+        source.sendFeedback(Text.translatable("playerhighlight.bowstatus.simulation_budget",
+                String.format("%.1f", ModConfig.getInstance().getSimulationBudgetMs()),
+                String.valueOf(PredictionExecutor.getPendingJobs()),
+                String.valueOf(PredictionExecutor.getParkedJobs()),
+                String.valueOf(PredictionExecutor.getResumedSlices()),
+                String.valueOf(SimulationBudget.getExhaustedTicks())));
+    }
+
+    private static void sendTrackerStats(FabricClientCommandSource source) {
+        double costNs = ProjectileTrackerClient.getTrackingCostNs();
+        source.sendFeedback(Text.translatable("playerhighlight.bowstatus.tracker",
+                String.valueOf(ProjectileTrackerClient.getTrackedCount()),
+                String.valueOf(ProjectileTrackerClient.getTrackingCapacity()),
+                Double.isNaN(costNs) ? "-" : String.format("%.1f", costNs / 1000.0),
+                String.valueOf(ProjectileTrackerClient.getEvictedProjectiles())));
+    }
+
+    private static void sendSetupQueueStats(FabricClientCommandSource source) {
+        source.sendFeedback(Text.translatable("playerhighlight.bowstatus.setup_queue",
+                String.valueOf(ProjectileTrackerClient.getSetupQueueDepth()),
+                String.format("%.1f", ProjectileTrackerClient.getSetupLagTicks()),
+                String.valueOf(ProjectileTrackerClient.getMaxSetupLagTicks()),
+                String.valueOf(ProjectileTrackerClient.getCompletedSetups())));
+    }
+
+    private static void runRaycastCheck(FabricClientCommandSource source) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client.world == null || client.player == null) {
+            source.sendFeedback(Text.translatable("playerhighlight.lookpvp.not_in_world"));
+            return;
+        }
+
+        RaycastVerifier.Result result = RaycastVerifier.run(
+                client.world,
+                client.player.getPos(),
+                RAYCAST_CHECK_SAMPLES,
+                client.world.getTime()
+        );
+        source.sendFeedback(Text.translatable("playerhighlight.bowstatus.raycheck",
+                String.valueOf(result.segments),
+                String.valueOf(result.hits),
+                String.valueOf(result.mismatches),
+                String.valueOf(result.seed)));
+        for (String detail : result.details) {
+            source.sendFeedback(Text.literal(detail));
+        }
+    }
+
+    private static void recordLayout(FabricClientCommandSource source) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client.world == null || client.player == null) {
+            source.sendFeedback(Text.translatable("playerhighlight.lookpvp.not_in_world"));
+            return;
+        }
+
+        String name = "layout-" + client.world.getTime();
+        try {
+            Path file = RaycastVerifier.recordLayout(client.world, client.player.getPos(), name);
+            source.sendFeedback(Text.translatable("playerhighlight.bowstatus.raycheck_recorded", file.toString()));
+        } catch (IOException e) {
+            PlayerHighlightClient.LOGGER.warn("Failed to record layout {}", name, e);
+            source.sendFeedback(Text.translatable("playerhighlight.bowstatus.raycheck_record_failed", e.getMessage()));
+        }
+    }
+
     private static void resetType(FabricClientCommandSource source, String type) {
         if (type == null || type.isBlank()) {
             source.sendFeedback(Text.translatable("playerhighlight.bowstatus.usage"));
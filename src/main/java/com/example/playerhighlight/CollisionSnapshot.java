@@ -0,0 +1,529 @@
+package com.example.playerhighlight;
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 碰撞快照 - 缓存弹道路径附近区块段（16x16x16）的 COLLIDER 碰撞形状与流体占用
+ *
+ * 所有预测共享同一份快照（射线检测见 SegmentRaycaster），同一区域内的多个弹道不再反复查询世界的方块状态与形状。
+ * 快照是 CollisionWorld 在客户端世界上的实现。
+ *
+ * 线程模型：客户端世界只在客户端线程上读取。区块段快照（{@link Section}）在客户端线程上构建，构建后不再修改，
+ * 后台预测线程（PredictionExecutor）只读取这些不可变数组。
+ * 后台线程查询到尚未构建的区块段时登记请求并返回“未就绪”（{@link View#isResident}），模拟随之暂停；
+ * 每个客户端 tick 开始时客户端线程构建登记的区块段，之后 PredictionExecutor 继续暂停的模拟
+ * （两个 tick 事件按注册顺序执行：PlayerHighlightClient 先初始化快照，再初始化 PredictionExecutor）。
+ * 客户端线程上的查询（同步模拟、射线自检）直接就地构建。
+ * 方块更新、区块加载/卸载同样只在客户端线程上处理：丢弃对应的快照，需要时重新构建。
+ *
+ * 另持有每列最高占用方块的高度缓存（ColumnHeightCache），用于判断线段是否一定高于地形。
+ *
+ * 注意：形状使用无实体上下文（ShapeContext.absent）获取，脚手架等依赖实体的形状可能与原版射线略有差异。
+ */
+public final class CollisionSnapshot implements CollisionWorld.Provider {
+
+    private static final int MAX_CACHED_SECTIONS = 512;  // 上限约 512 * 4096 个引用（~8MB）
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    /** 整个区块段都没有碰撞形状，也没有流体（空气/未加载/超出世界高度） */
+    private static final Section EMPTY_SECTION = new Section(null, null);
+
+    /** 区域检测最多检查的区块段数（超出时保守地视为不空） */
+    private static final int MAX_REGION_SECTIONS = 64;
+    /** 地形高度检测最多检查的列数 */
+    private static final int MAX_TERRAIN_COLUMNS = 256;
+
+    /** 每 tick 构建登记请求的时间上限（至少构建 MIN_BUILDS_PER_TICK 个） */
+    private static final long BUILD_BUDGET_NS = 1_000_000L;
+    private static final int MIN_BUILDS_PER_TICK = 8;
+    /** 捕获预测任务时预先构建的直线路径长度（tick） */
+    private static final int PREFETCH_TICKS = 4;
+
+    private static volatile CollisionSnapshot INSTANCE;
+
+    private final World world;  // 仅客户端线程访问
+    private final Thread clientThread;
+    private final ColumnHeightCache heights;
+    private final Map<Long, Section> sections = new ConcurrentHashMap<>();
+    private final Set<Long> requested = ConcurrentHashMap.newKeySet();
+    private final LinkedHashSet<Long> insertionOrder = new LinkedHashSet<>();  // 淘汰顺序，仅客户端线程访问
+    private volatile boolean retired = false;
+
+    private CollisionSnapshot(World world) {
+        this.world = world;
+        this.clientThread = Thread.currentThread();
+        this.heights = new ColumnHeightCache(world);
+    }
+
+    /**
+     * 注册区块加载/卸载事件与 tick 事件（方块更新由 WorldBlockChangeMixin 转发）
+     */
+    public static void initialize() {
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+            CollisionSnapshot snapshot = forWorld(world);
+            snapshot.invalidateChunk(chunk.getPos().x, chunk.getPos().z);
+            snapshot.heights.onChunkLoad(chunk);
+        });
+        ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> {
+            CollisionSnapshot snapshot = INSTANCE;
+            if (snapshot == null || snapshot.world != world) {
+                return;
+            }
+            snapshot.invalidateChunk(chunk.getPos().x, chunk.getPos().z);
+            snapshot.heights.onChunkUnload(chunk.getPos());
+        });
+        ClientTickEvents.START_CLIENT_TICK.register(client -> {
+            CollisionSnapshot snapshot = INSTANCE;
+            if (snapshot == null) {
+                return;
+            }
+            if (snapshot.world != client.world) {
+                // 已离开该世界：仍在等待的模拟按空气完成，结果会被追踪器丢弃
+                snapshot.retire();
+                return;
+            }
+            snapshot.buildRequested();
+        });
+    }
+
+    /**
+     * 获取指定世界的共享快照（切换世界时自动重建；只能在客户端线程调用）
+     */
+    public static CollisionSnapshot forWorld(World world) {
+        CollisionSnapshot snapshot = INSTANCE;
+        if (snapshot == null || snapshot.world != world) {
+            if (snapshot != null) {
+                snapshot.retire();
+            }
+            snapshot = new CollisionSnapshot(world);
+            INSTANCE = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 创建只读视图（每次模拟一个，不得跨线程共享）
+     */
+    public View newView() {
+        return new View(this, Thread.currentThread() == clientThread);
+    }
+
+    @Override
+    public CollisionWorld open() {
+        return newView();
+    }
+
+    /**
+     * 客户端方块变化：丢弃所在区块段的快照（下一 tick 开始时重建），并更新列高度
+     */
+    public static void onBlockChanged(World world, BlockPos pos, BlockState newState) {
+        CollisionSnapshot snapshot = INSTANCE;
+        if (snapshot == null || snapshot.world != world || pos == null) {
+            return;
+        }
+        long key = ChunkSectionPos.asLong(
+                ChunkSectionPos.getSectionCoord(pos.getX()),
+                ChunkSectionPos.getSectionCoord(pos.getY()),
+                ChunkSectionPos.getSectionCoord(pos.getZ())
+        );
+        if (snapshot.sections.remove(key) != null) {
+            snapshot.insertionOrder.remove(key);
+            snapshot.requested.add(key);
+        }
+        if (newState != null) {
+            snapshot.heights.onBlockChanged(pos, newState);
+        }
+    }
+
+    /**
+     * 在客户端线程上预先构建弹道最初几个 tick 直线经过的区块段，使新提交的模拟不必先暂停一个 tick
+     */
+    void prefetch(double posX, double posY, double posZ, double velX, double velY, double velZ) {
+        double endX = posX + velX * PREFETCH_TICKS;
+        double endY = posY + velY * PREFETCH_TICKS;
+        double endZ = posZ + velZ * PREFETCH_TICKS;
+        newView().isResident(
+                Math.min(posX, endX), Math.min(posY, endY) - 1.0, Math.min(posZ, endZ),
+                Math.max(posX, endX), Math.max(posY, endY), Math.max(posZ, endZ)
+        );
+    }
+
+    /**
+     * 构建后台线程登记的区块段与列高度（客户端线程，每 tick 开始时）
+     */
+    private void buildRequested() {
+        long start = System.nanoTime();
+        int built = 0;
+        Iterator<Long> iterator = requested.iterator();
+        while (iterator.hasNext()) {
+            if (built >= MIN_BUILDS_PER_TICK && System.nanoTime() - start > BUILD_BUDGET_NS) {
+                break;
+            }
+            long key = iterator.next();
+            iterator.remove();
+            if (!sections.containsKey(key)) {
+                put(key, buildSection(ChunkSectionPos.unpackX(key), ChunkSectionPos.unpackY(key), ChunkSectionPos.unpackZ(key)));
+                built++;
+            }
+        }
+        heights.buildRequested();
+    }
+
+    private void retire() {
+        retired = true;
+        requested.clear();
+        heights.retire();
+    }
+
+    /**
+     * 取区块段快照：客户端线程上未命中时就地构建；其他线程未命中时登记请求并返回 null
+     */
+    private Section getSection(long key, int sectionX, int sectionY, int sectionZ, boolean onClientThread) {
+        Section section = sections.get(key);
+        if (section != null) {
+            return section;
+        }
+        if (retired) {
+            return EMPTY_SECTION;
+        }
+        if (onClientThread) {
+            section = buildSection(sectionX, sectionY, sectionZ);
+            put(key, section);
+            return section;
+        }
+        requested.add(key);
+        return null;
+    }
+
+    private void put(long key, Section section) {
+        sections.put(key, section);
+        insertionOrder.remove(key);
+        insertionOrder.add(key);
+        Iterator<Long> oldest = insertionOrder.iterator();
+        while (sections.size() > MAX_CACHED_SECTIONS && oldest.hasNext()) {
+            sections.remove(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    /**
+     * 从客户端世界构建区块段快照（仅客户端线程）
+     */
+    private Section buildSection(int sectionX, int sectionY, int sectionZ) {
+        int sectionIndex = world.sectionCoordToIndex(sectionY);
+        if (sectionIndex < 0 || sectionIndex >= world.countVerticalSections()) {
+            return EMPTY_SECTION;
+        }
+
+        // 未加载的区块按空气处理（与客户端世界射线检测一致）；加载后由事件失效
+        Chunk chunk = world.getChunk(sectionX, sectionZ, ChunkStatus.FULL, false);
+        if (chunk == null) {
+            return EMPTY_SECTION;
+        }
+
+        ChunkSection chunkSection = chunk.getSection(sectionIndex);
+        if (chunkSection == null || chunkSection.isEmpty()) {
+            return EMPTY_SECTION;
+        }
+
+        int baseX = ChunkSectionPos.getBlockCoord(sectionX);
+        int baseY = ChunkSectionPos.getBlockCoord(sectionY);
+        int baseZ = ChunkSectionPos.getBlockCoord(sectionZ);
+
+        BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+        VoxelShape[] shapes = new VoxelShape[SECTION_VOLUME];
+        long[] fluid = new long[SECTION_VOLUME / Long.SIZE];
+        boolean anyCollision = false;
+        boolean anyFluid = false;
+        for (int ly = 0; ly < 16; ly++) {
+            for (int lz = 0; lz < 16; lz++) {
+                for (int lx = 0; lx < 16; lx++) {
+                    int index = (ly << 8) | (lz << 4) | lx;
+                    BlockState state = chunkSection.getBlockState(lx, ly, lz);
+                    VoxelShape shape = state.isAir()
+                            ? VoxelShapes.empty()
+                            : state.getCollisionShape(world, mutablePos.set(baseX + lx, baseY + ly, baseZ + lz));
+                    shapes[index] = shape;
+                    anyCollision |= !shape.isEmpty();
+                    if (!state.getFluidState().isEmpty()) {
+                        fluid[index >>> 6] |= 1L << index;
+                        anyFluid = true;
+                    }
+                }
+            }
+        }
+        if (!anyCollision && !anyFluid) {
+            return EMPTY_SECTION;
+        }
+        return new Section(anyCollision ? shapes : null, anyFluid ? fluid : null);
+    }
+
+    private void invalidateChunk(int chunkX, int chunkZ) {
+        sections.keySet().removeIf(key ->
+                ChunkSectionPos.unpackX(key) == chunkX && ChunkSectionPos.unpackZ(key) == chunkZ);
+        insertionOrder.removeIf(key ->
+                ChunkSectionPos.unpackX(key) == chunkX && ChunkSectionPos.unpackZ(key) == chunkZ);
+    }
+
+    private static int localIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * 一个区块段的不可变快照：碰撞形状（没有碰撞时为 null）与按方块的流体占用位图（没有流体时为 null）
+     */
+    private static final class Section {
+        final VoxelShape[] shapes;
+        final long[] fluid;
+
+        Section(VoxelShape[] shapes, long[] fluid) {
+            this.shapes = shapes;
+            this.fluid = fluid;
+        }
+
+        VoxelShape shapeAt(int index) {
+            return shapes != null ? shapes[index] : VoxelShapes.empty();
+        }
+
+        boolean fluidAt(int index) {
+            return fluid != null && (fluid[index >>> 6] & (1L << index)) != 0;
+        }
+    }
+
+    /**
+     * 快照的只读视图
+     *
+     * 区块段快照不可变，视图缓存最近一次访问的区块段后可以无锁读取；
+     * {@link #isResident} 确认就绪的区块段被视图固定，之后即使快照淘汰或失效，本次查询仍读取同一份数据。
+     * 非线程安全：每次模拟各自创建一个。
+     */
+    public static final class View implements CollisionWorld, SegmentRaycaster.VoxelHitTest {
+        private final CollisionSnapshot snapshot;
+        private final boolean onClientThread;
+
+        // 最近一次访问的区块段（连续查询通常落在同一区块段内）
+        private long lastSectionKey = Long.MIN_VALUE;
+        private Section lastSection = null;
+
+        // isResident 确认就绪的区块段
+        private long[] pinnedKeys = new long[8];
+        private Section[] pinnedSections = new Section[8];
+        private int pinnedCount = 0;
+
+        // 最近一次访问的区块列高度
+        private long lastChunkKey = Long.MIN_VALUE;
+        private short[] lastChunkTops = null;
+
+        private View(CollisionSnapshot snapshot, boolean onClientThread) {
+            this.snapshot = snapshot;
+            this.onClientThread = onClientThread;
+        }
+
+        /**
+         * 获取方块的碰撞形状（无碰撞或区块段尚未就绪时返回空形状）
+         */
+        public VoxelShape getCollisionShape(int x, int y, int z) {
+            Section section = section(
+                    ChunkSectionPos.getSectionCoord(x),
+                    ChunkSectionPos.getSectionCoord(y),
+                    ChunkSectionPos.getSectionCoord(z)
+            );
+            return section != null ? section.shapeAt(localIndex(x, y, z)) : VoxelShapes.empty();
+        }
+
+        @Override
+        public boolean raycast(double startX, double startY, double startZ,
+                               double endX, double endY, double endZ,
+                               double[] hitOut) {
+            return SegmentRaycaster.raycast(this, startX, startY, startZ, endX, endY, endZ, hitOut);
+        }
+
+        @Override
+        public boolean hitVoxel(int blockX, int blockY, int blockZ,
+                                double startX, double startY, double startZ,
+                                double endX, double endY, double endZ,
+                                double[] hitOut) {
+            return SegmentRaycaster.hitShape(getCollisionShape(blockX, blockY, blockZ), blockX, blockY, blockZ,
+                    startX, startY, startZ, endX, endY, endZ, hitOut);
+        }
+
+        /**
+         * 区域内的区块段是否都已有快照；未就绪的区块段全部登记构建请求（客户端线程上直接构建）。
+         * 就绪的区块段在下一次调用之前被视图固定。
+         */
+        @Override
+        public boolean isResident(double minX, double minY, double minZ,
+                                  double maxX, double maxY, double maxZ) {
+            int minSectionX = ChunkSectionPos.getSectionCoord(MathHelper.floor(minX));
+            int minSectionY = ChunkSectionPos.getSectionCoord(MathHelper.floor(minY));
+            int minSectionZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(minZ));
+            int maxSectionX = ChunkSectionPos.getSectionCoord(MathHelper.floor(maxX));
+            int maxSectionY = ChunkSectionPos.getSectionCoord(MathHelper.floor(maxY));
+            int maxSectionZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(maxZ));
+
+            pinnedCount = 0;
+            boolean resident = true;
+            for (int sectionX = minSectionX; sectionX <= maxSectionX; sectionX++) {
+                for (int sectionZ = minSectionZ; sectionZ <= maxSectionZ; sectionZ++) {
+                    for (int sectionY = minSectionY; sectionY <= maxSectionY; sectionY++) {
+                        long key = ChunkSectionPos.asLong(sectionX, sectionY, sectionZ);
+                        Section section = snapshot.getSection(key, sectionX, sectionY, sectionZ, onClientThread);
+                        if (section == null) {
+                            resident = false;
+                        } else if (resident) {
+                            pin(key, section);
+                        }
+                    }
+                }
+            }
+            return resident;
+        }
+
+        /**
+         * 区域内是否一定没有碰撞形状（按区块段粒度，保守：不确定或尚未就绪时返回 false）
+         *
+         * 未就绪的区块段全部登记构建请求：粗步进每次检查的是之后一段轨迹的包围盒，
+         * 相当于提前请求模拟接下来要经过的区块段。
+         *
+         * @param requireNoFluid 是否同时要求没有流体
+         */
+        @Override
+        public boolean isRegionClear(double minX, double minY, double minZ,
+                                     double maxX, double maxY, double maxZ,
+                                     boolean requireNoFluid) {
+            int minSectionX = ChunkSectionPos.getSectionCoord(MathHelper.floor(minX));
+            int minSectionY = ChunkSectionPos.getSectionCoord(MathHelper.floor(minY));
+            int minSectionZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(minZ));
+            int maxSectionX = ChunkSectionPos.getSectionCoord(MathHelper.floor(maxX));
+            int maxSectionY = ChunkSectionPos.getSectionCoord(MathHelper.floor(maxY));
+            int maxSectionZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(maxZ));
+
+            long sectionCount = (long) (maxSectionX - minSectionX + 1)
+                    * (maxSectionY - minSectionY + 1)
+                    * (maxSectionZ - minSectionZ + 1);
+            if (sectionCount > MAX_REGION_SECTIONS) {
+                return false;
+            }
+
+            boolean clear = true;
+            for (int sectionX = minSectionX; sectionX <= maxSectionX; sectionX++) {
+                for (int sectionZ = minSectionZ; sectionZ <= maxSectionZ; sectionZ++) {
+                    for (int sectionY = minSectionY; sectionY <= maxSectionY; sectionY++) {
+                        Section section = section(sectionX, sectionY, sectionZ);
+                        if (section == null) {
+                            clear = false;
+                        } else if (section.shapes != null || (requireNoFluid && section.fluid != null)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return clear;
+        }
+
+        /**
+         * 线段经过的所有列中，最高占用方块是否都低于 minY（列数过多或列高度尚未就绪时保守地返回 false）
+         *
+         * @param minY 需要检测的最低高度（调用方已计入贴地探测距离）
+         */
+        @Override
+        public boolean isAboveTerrain(double minX, double minZ, double maxX, double maxZ, double minY) {
+            int minBlockX = MathHelper.floor(minX);
+            int minBlockZ = MathHelper.floor(minZ);
+            int maxBlockX = MathHelper.floor(maxX);
+            int maxBlockZ = MathHelper.floor(maxZ);
+            if ((long) (maxBlockX - minBlockX + 1) * (maxBlockZ - minBlockZ + 1) > MAX_TERRAIN_COLUMNS) {
+                return false;
+            }
+
+            for (int x = minBlockX; x <= maxBlockX; x++) {
+                for (int z = minBlockZ; z <= maxBlockZ; z++) {
+                    short[] tops = chunkTops(ChunkSectionPos.getSectionCoord(x), ChunkSectionPos.getSectionCoord(z));
+                    if (tops == null || minY < tops[ColumnHeightCache.columnIndex(x, z)]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private short[] chunkTops(int chunkX, int chunkZ) {
+            long key = ChunkPos.toLong(chunkX, chunkZ);
+            if (key != lastChunkKey || lastChunkTops == null) {
+                lastChunkTops = snapshot.heights.getChunkTops(chunkX, chunkZ, onClientThread);
+                lastChunkKey = key;
+            }
+            return lastChunkTops;
+        }
+
+        private void pin(long key, Section section) {
+            if (pinnedCount == pinnedKeys.length) {
+                pinnedKeys = Arrays.copyOf(pinnedKeys, pinnedCount * 2);
+                pinnedSections = Arrays.copyOf(pinnedSections, pinnedCount * 2);
+            }
+            pinnedKeys[pinnedCount] = key;
+            pinnedSections[pinnedCount] = section;
+            pinnedCount++;
+        }
+
+        /**
+         * 取区块段：最近访问 -> 已固定 -> 快照（未就绪时为 null）
+         */
+        private Section section(int sectionX, int sectionY, int sectionZ) {
+            long key = ChunkSectionPos.asLong(sectionX, sectionY, sectionZ);
+            if (key == lastSectionKey && lastSection != null) {
+                return lastSection;
+            }
+            Section section = null;
+            for (int i = 0; i < pinnedCount; i++) {
+                if (pinnedKeys[i] == key) {
+                    section = pinnedSections[i];
+                    break;
+                }
+            }
+            if (section == null) {
+                section = snapshot.getSection(key, sectionX, sectionY, sectionZ, onClientThread);
+            }
+            if (section != null) {
+                lastSectionKey = key;
+                lastSection = section;
+            }
+            return section;
+        }
+
+        /**
+         * 坐标所在方块是否有流体（读取区块段快照中的流体位图；区块段尚未就绪时返回 false）
+         */
+        @Override
+        public boolean isInFluid(double x, double y, double z) {
+            int blockX = MathHelper.floor(x);
+            int blockY = MathHelper.floor(y);
+            int blockZ = MathHelper.floor(z);
+            Section section = section(
+                    ChunkSectionPos.getSectionCoord(blockX),
+                    ChunkSectionPos.getSectionCoord(blockY),
+                    ChunkSectionPos.getSectionCoord(blockZ)
+            );
+            return section != null && section.fluidAt(localIndex(blockX, blockY, blockZ));
+        }
+    }
+}
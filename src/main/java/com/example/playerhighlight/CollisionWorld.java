@@ -0,0 +1,75 @@
+package com.example.playerhighlight;
+
+/**
+ * 模拟内核使用的碰撞世界抽象（不依赖 Minecraft 的 World）
+ *
+ * PhysicsSimulator 只通过这个接口查询地形，因此既可以在客户端世界上运行
+ * （CollisionSnapshot 的视图），也可以在内存体素网格上运行（VoxelGridWorld），
+ * 后者用于基准测试与回放录制的竞技场布局，无需启动客户端。
+ *
+ * 实例按一次模拟使用，不要求线程安全；跨线程共享的是 {@link Provider}。
+ */
+public interface CollisionWorld {
+
+    /**
+     * 沿线段做碰撞射线检测（与原版 COLLIDER 射线一致的命中位置）
+     *
+     * @param hitOut 命中时写入命中位置（长度 >= 3）
+     * @return 是否命中
+     */
+    boolean raycast(double startX, double startY, double startZ,
+                    double endX, double endY, double endZ,
+                    double[] hitOut);
+
+    /**
+     * 坐标所在方块是否有流体
+     */
+    boolean isInFluid(double x, double y, double z);
+
+    /**
+     * 从坐标向下探测地面（低速贴地判断）
+     *
+     * @param hitOut 命中时写入地面位置（长度 >= 3）
+     * @return 探测距离内是否有地面
+     */
+    default boolean probeGround(double x, double y, double z, double maxDistance, double[] hitOut) {
+        return raycast(x, y, z, x, y - maxDistance, z, hitOut);
+    }
+
+    /**
+     * 区域内是否一定没有碰撞形状（粗步进加速用；保守：不确定时返回 false）
+     *
+     * @param requireNoFluid 是否同时要求没有流体
+     */
+    default boolean isRegionClear(double minX, double minY, double minZ,
+                                  double maxX, double maxY, double maxZ,
+                                  boolean requireNoFluid) {
+        return false;
+    }
+
+    /**
+     * 区域内所有列的最高占用方块（碰撞或流体）是否都低于 minY（粗步进加速用；保守：不确定时返回 false）
+     */
+    default boolean isAboveTerrain(double minX, double minZ, double maxX, double maxZ, double minY) {
+        return false;
+    }
+
+    /**
+     * 区域内的地形数据是否已就绪，可以立即查询（未就绪时实现可登记请求，稍后再查）
+     *
+     * 后台线程上的 CollisionSnapshot 只读取客户端线程构建好的区块段；
+     * 返回 false 时模拟内核停在当前 tick，等待数据就绪后继续。内存中的实现始终就绪。
+     */
+    default boolean isResident(double minX, double minY, double minZ,
+                               double maxX, double maxY, double maxZ) {
+        return true;
+    }
+
+    /**
+     * 碰撞世界的来源：可跨线程共享，每次模拟通过 {@link #open()} 获取自己的查询实例
+     */
+    @FunctionalInterface
+    interface Provider {
+        CollisionWorld open();
+    }
+}
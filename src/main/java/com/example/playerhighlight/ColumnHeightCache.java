@@ -0,0 +1,205 @@
+package com.example.playerhighlight;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每列（x, z）最高“占用”方块的高度缓存
+ *
+ * “占用”指有碰撞形状或含流体的方块；每列记录最高占用方块的 y + 1（没有则为世界底部）。
+ * 弹道线段所经过的所有列都低于线段最低点时，射线/贴地/流体检测必然落空，可以直接跳过
+ * （射线只检测线段穿过的方块自身的形状，栅栏等超过 1 格高的形状不会影响上方方块）。
+ *
+ * 区块加载时从区块数据构建、卸载时移除，方块变化时按写时复制更新（后台线程读到的数组不会再被修改）；
+ * 只保存客户端已加载的区块，总量受渲染距离限制（每区块 512 字节）。
+ * 世界只在客户端线程上读取：后台线程查询到尚未构建的区块时登记请求，由 CollisionSnapshot 在下一 tick 开始时构建。
+ * 由 CollisionSnapshot 持有，随世界切换一起重建。
+ */
+final class ColumnHeightCache {
+
+    private final World world;  // 仅客户端线程访问
+    private final int bottomY;
+    private final Map<Long, short[]> chunks = new ConcurrentHashMap<>();
+    private final Set<Long> requested = ConcurrentHashMap.newKeySet();
+    private final short[] unloadedTops;  // 未加载的区块：按空气处理
+    private final BlockPos.Mutable scratchPos = new BlockPos.Mutable();  // 仅客户端线程使用
+    private volatile boolean retired = false;
+
+    ColumnHeightCache(World world) {
+        this.world = world;
+        this.bottomY = world.getBottomY();
+        this.unloadedTops = new short[16 * 16];
+        Arrays.fill(unloadedTops, (short) bottomY);
+    }
+
+    /**
+     * 获取区块的列高度（未加载的区块全部为世界底部，按空气处理）
+     *
+     * @param onClientThread 是否在客户端线程：是则未命中时就地构建，否则登记请求并返回 null
+     */
+    short[] getChunkTops(int chunkX, int chunkZ, boolean onClientThread) {
+        long key = ChunkPos.toLong(chunkX, chunkZ);
+        short[] tops = chunks.get(key);
+        if (tops != null) {
+            return tops;
+        }
+        if (retired) {
+            return unloadedTops;
+        }
+        if (!onClientThread) {
+            requested.add(key);
+            return null;
+        }
+        // 加载事件之前的区块（如刚切换世界）：按需构建
+        tops = buildChunk(chunkX, chunkZ);
+        chunks.put(key, tops);
+        return tops;
+    }
+
+    /**
+     * 构建后台线程登记的区块（客户端线程，每 tick 开始时）
+     */
+    void buildRequested() {
+        Iterator<Long> iterator = requested.iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.next();
+            iterator.remove();
+            if (!chunks.containsKey(key)) {
+                chunks.put(key, buildChunk(ChunkPos.getPackedX(key), ChunkPos.getPackedZ(key)));
+            }
+        }
+    }
+
+    void retire() {
+        retired = true;
+        requested.clear();
+    }
+
+    void onChunkLoad(Chunk chunk) {
+        ChunkPos pos = chunk.getPos();
+        chunks.put(pos.toLong(), build(chunk, scratchPos));
+        trimToRenderDistance();
+    }
+
+    void onChunkUnload(ChunkPos pos) {
+        chunks.remove(pos.toLong());
+    }
+
+    /**
+     * 方块变化：新方块更高则抬高列顶；移除的正好是列顶则向下重新扫描该列
+     */
+    void onBlockChanged(BlockPos pos, BlockState newState) {
+        long key = ChunkPos.toLong(
+                ChunkSectionPos.getSectionCoord(pos.getX()),
+                ChunkSectionPos.getSectionCoord(pos.getZ()));
+        short[] tops = chunks.get(key);
+        if (tops == null || tops == unloadedTops) {
+            return;
+        }
+
+        int column = columnIndex(pos.getX(), pos.getZ());
+        int top = tops[column];
+        int newTop = top;
+        if (isOccupied(newState, pos)) {
+            if (pos.getY() + 1 > top) {
+                newTop = pos.getY() + 1;
+            }
+        } else if (pos.getY() + 1 == top) {
+            newTop = rescanColumn(pos.getX(), pos.getY() - 1, pos.getZ());
+        }
+        if (newTop != top) {
+            short[] updated = tops.clone();
+            updated[column] = (short) newTop;
+            chunks.put(key, updated);
+        }
+    }
+
+    private short[] buildChunk(int chunkX, int chunkZ) {
+        Chunk chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.FULL, false);
+        return chunk != null ? build(chunk, scratchPos) : unloadedTops;
+    }
+
+    private int rescanColumn(int x, int startY, int z) {
+        for (int y = startY; y >= bottomY; y--) {
+            scratchPos.set(x, y, z);
+            if (isOccupied(world.getBlockState(scratchPos), scratchPos)) {
+                return y + 1;
+            }
+        }
+        return bottomY;
+    }
+
+    private short[] build(Chunk chunk, BlockPos.Mutable mutablePos) {
+        short[] tops = new short[16 * 16];
+        Arrays.fill(tops, (short) bottomY);
+        boolean[] found = new boolean[16 * 16];
+        int remaining = tops.length;
+
+        int baseX = chunk.getPos().getStartX();
+        int baseZ = chunk.getPos().getStartZ();
+
+        // 从最高的非空区块段向下扫描，每列找到第一个占用方块即停止
+        for (int index = chunk.getHighestNonEmptySection(); index >= 0 && remaining > 0; index--) {
+            ChunkSection section = chunk.getSection(index);
+            if (section == null || section.isEmpty()) {
+                continue;
+            }
+            int baseY = ChunkSectionPos.getBlockCoord(world.sectionIndexToCoord(index));
+            for (int lz = 0; lz < 16; lz++) {
+                for (int lx = 0; lx < 16; lx++) {
+                    int column = (lz << 4) | lx;
+                    if (found[column]) {
+                        continue;
+                    }
+                    for (int ly = 15; ly >= 0; ly--) {
+                        BlockState state = section.getBlockState(lx, ly, lz);
+                        if (isOccupied(state, mutablePos.set(baseX + lx, baseY + ly, baseZ + lz))) {
+                            tops[column] = (short) (baseY + ly + 1);
+                            found[column] = true;
+                            remaining--;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return tops;
+    }
+
+    private boolean isOccupied(BlockState state, BlockPos pos) {
+        if (state.isAir()) {
+            return false;
+        }
+        return !state.getFluidState().isEmpty() || !state.getCollisionShape(world, pos).isEmpty();
+    }
+
+    /**
+     * 卸载事件丢失时的兜底：超过渲染距离对应的区块数时，移除已不再加载的区块
+     */
+    private void trimToRenderDistance() {
+        int viewDistance = MinecraftClient.getInstance().options.getClampedViewDistance();
+        int maxChunks = (2 * viewDistance + 3) * (2 * viewDistance + 3);
+        if (chunks.size() <= maxChunks) {
+            return;
+        }
+        chunks.keySet().removeIf(key -> world.getChunk(
+                ChunkPos.getPackedX(key), ChunkPos.getPackedZ(key), ChunkStatus.FULL, false) == null);
+    }
+
+    static int columnIndex(int x, int z) {
+        return ((z & 15) << 4) | (x & 15);
+    }
+}
@@ -28,6 +28,7 @@ public class ConfigScreen extends Screen {
     private ButtonWidget bowPreviewTrajectoryButton;
     private ButtonWidget bowPreviewLandingMarkerButton;
     private ButtonWidget bowPreviewInaccuracyButton;
+    private ButtonWidget bowPreviewSpreadButton;
     private ButtonWidget simulateFluidDragButton;
     private SliderWidget nearbyWarningRangeSlider;
 
@@ -127,6 +128,18 @@ public class ConfigScreen extends Screen {
                 .build();
         this.addDrawableChild(bowPreviewInaccuracyButton);
 
+        // 弓箭预瞄：散布范围（蒙特卡洛落点椭圆）
+        y += ROW_SPACING;
+        bowPreviewSpreadButton = ButtonWidget.builder(
+                        getBowPreviewSpreadText(),
+                        button -> {
+                            config.setBowPreviewSpreadEnabled(!config.isBowPreviewSpreadEnabled());
+                            button.setMessage(getBowPreviewSpreadText());
+                        })
+                .dimensions(x, y, BUTTON_WIDTH, BUTTON_HEIGHT)
+                .build();
+        this.addDrawableChild(bowPreviewSpreadButton);
+
         // 弹道预测：模拟流体减速（箭进水/熔岩）
         y += ROW_SPACING;
         simulateFluidDragButton = ButtonWidget.builder(
@@ -185,6 +198,10 @@ public class ConfigScreen extends Screen {
         return getToggleText("playerhighlight.config.bow_preview_inaccuracy", config.isBowPreviewSimulateInaccuracy());
     }
 
+    private Text getBowPreviewSpreadText() {
+        return getToggleText("playerhighlight.config.bow_preview_spread", config.isBowPreviewSpreadEnabled());
+    }
+
     private Text getSimulateFluidDragText() {
         return getToggleText("playerhighlight.config.fluid_drag", config.isSimulateFluidDrag());
     }
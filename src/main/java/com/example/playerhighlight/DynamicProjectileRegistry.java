@@ -287,6 +287,8 @@ public class DynamicProjectileRegistry {
         private double drag;
 
         // 校准统计
+        private int paramsVersion = 0;  // 每次更新物理参数递增（用于使缓存的预测失效）
+
         private int sampleCount = 0;
         private double avgError = 0.0;
         private double errorWeightedSum = 0.0;
@@ -302,6 +304,7 @@ public class DynamicProjectileRegistry {
         public String getTypeId() { return typeId; }
         public double getGravity() { return gravity; }
         public double getDrag() { return drag; }
+        public int getParamsVersion() { return paramsVersion; }
         public int getSampleCount() { return sampleCount; }
         public double getAvgError() { return avgError; }
         public double getErrorWeightedSum() { return errorWeightedSum; }
@@ -311,6 +314,7 @@ public class DynamicProjectileRegistry {
         public void updateParams(double newGravity, double newDrag) {
             this.gravity = newGravity;
             this.drag = newDrag;
+            this.paramsVersion++;
         }
 
         public void recordErrorSample(double rmse, double weight) {
@@ -9,17 +9,18 @@ import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.math.Vec3d;
 import org.joml.Matrix4f;
 
-import java.util.List;
-
 /**
  * 落点标记和轨迹线渲染器
  *
  * 在预测的落点位置绘制方块轮廓标记
  * 同时绘制弹道轨迹线
- * 红色表示危险（警告范围内），黄色表示安全
+ * 红色表示危险（警告范围内），黄色表示安全；更新的预测尚在模拟中途（部分完成）时半透明显示旧结果
  */
 public class LandingPointRenderer {
 
+    /** 部分完成时旧预测的不透明度系数 */
+    private static final float PARTIAL_OPACITY = 0.4f;
+
     /**
      * 初始化渲染器
      */
@@ -70,18 +71,24 @@ public class LandingPointRenderer {
         // 渲染每个追踪弹道（包括击中后3秒内的弹道）
         for (TrackedProjectile tracked : ProjectileTrackerClient.getActiveProjectiles()) {
             ProjectilePrediction prediction = tracked.getPrediction();
+            if (prediction == null) {
+                continue;  // 预测结果尚未返回
+            }
             Vec3d landingPos = prediction.landingPos;
-            boolean isNear = landingPos.distanceTo(client.player.getPos()) <= alertRange;
+            boolean isNear = ProjectileTrackerClient.isThreatTo(
+                    tracked, prediction, client.player.getPos(), client.player.getId(), alertRange);
+            // 更新的预测暂停在模拟中途：当前显示的是较旧的结果，降低不透明度以示区别
+            float opacity = tracked.isPredictionPartial() ? PARTIAL_OPACITY : 1.0f;
 
             // 颜色：红色（危险）或黄色（安全）
             float r = 1.0f;
             float g = isNear ? 0.0f : 1.0f;
             float b = 0.0f;
-            float a = 0.8f;
+            float a = 0.8f * opacity;
 
             // 1. 绘制轨迹线（如果启用）
             if (PlayerHighlightClient.isTrajectoryLineEnabled()) {
-                drawTrajectoryLine(matrices, buffer, prediction.trajectoryPoints, isNear);
+                drawTrajectoryLine(matrices, buffer, prediction, isNear, opacity);
             }
 
             // 2. 绘制落点方块轮廓
@@ -103,20 +110,26 @@ public class LandingPointRenderer {
      * 使用渐变颜色和多重绘制增加可见性
      */
     private static void drawTrajectoryLine(MatrixStack matrices, BufferBuilder buffer,
-                                            List<Vec3d> trajectoryPoints, boolean isNear) {
-        if (trajectoryPoints == null || trajectoryPoints.size() < 2) {
+                                            ProjectilePrediction prediction, boolean isNear, float opacity) {
+        if (prediction.getPointCount() < 2) {
             return;
         }
 
         Matrix4f matrix = matrices.peek().getPositionMatrix();
-        int totalPoints = trajectoryPoints.size();
+        int totalPoints = prediction.getPointCount();
+        // 渐变按飞行时间计算（简化后的轨迹点间隔不均匀）
+        float totalTicks = Math.max(1, prediction.getPointTick(totalPoints - 1));
 
         for (int i = 0; i < totalPoints - 1; i++) {
-            Vec3d start = trajectoryPoints.get(i);
-            Vec3d end = trajectoryPoints.get(i + 1);
+            float startX = (float) prediction.getPointX(i);
+            float startY = (float) prediction.getPointY(i);
+            float startZ = (float) prediction.getPointZ(i);
+            float endX = (float) prediction.getPointX(i + 1);
+            float endY = (float) prediction.getPointY(i + 1);
+            float endZ = (float) prediction.getPointZ(i + 1);
 
             // 计算渐变进度 (0.0 到 1.0)
-            float progress = (float) i / (totalPoints - 1);
+            float progress = prediction.getPointTick(i) / totalTicks;
 
             // 颜色渐变：青色 -> 红/黄
             // 起点：亮青色 (0.4, 0.9, 1.0)
@@ -124,31 +137,31 @@ public class LandingPointRenderer {
             float startR = 0.4f + progress * 0.6f;
             float startG = isNear ? (0.9f * (1 - progress)) : (0.9f + progress * 0.1f);
             float startB = 1.0f * (1 - progress);
-            float alpha = 0.9f;  // 增加透明度到0.9
+            float alpha = 0.9f * opacity;  // 增加透明度到0.9
 
-            float endProgress = (float) (i + 1) / (totalPoints - 1);
+            float endProgress = prediction.getPointTick(i + 1) / totalTicks;
             float endR = 0.4f + endProgress * 0.6f;
             float endG = isNear ? (0.9f * (1 - endProgress)) : (0.9f + endProgress * 0.1f);
             float endB = 1.0f * (1 - endProgress);
-            float endAlpha = 0.9f;
+            float endAlpha = 0.9f * opacity;
 
             // 绘制主线段
-            buffer.vertex(matrix, (float) start.x, (float) start.y, (float) start.z)
+            buffer.vertex(matrix, startX, startY, startZ)
                     .color(startR, startG, startB, alpha).next();
-            buffer.vertex(matrix, (float) end.x, (float) end.y, (float) end.z)
+            buffer.vertex(matrix, endX, endY, endZ)
                     .color(endR, endG, endB, endAlpha).next();
 
             // 绘制偏移线段增加粗细（沿X轴微小偏移）
             double offset = 0.02;
-            buffer.vertex(matrix, (float) (start.x + offset), (float) start.y, (float) start.z)
+            buffer.vertex(matrix, (float) (prediction.getPointX(i) + offset), startY, startZ)
                     .color(startR, startG, startB, alpha * 0.7f).next();
-            buffer.vertex(matrix, (float) (end.x + offset), (float) end.y, (float) end.z)
+            buffer.vertex(matrix, (float) (prediction.getPointX(i + 1) + offset), endY, endZ)
                     .color(endR, endG, endB, endAlpha * 0.7f).next();
 
             // 绘制偏移线段（沿Z轴微小偏移）
-            buffer.vertex(matrix, (float) start.x, (float) start.y, (float) (start.z + offset))
+            buffer.vertex(matrix, startX, startY, (float) (prediction.getPointZ(i) + offset))
                     .color(startR, startG, startB, alpha * 0.7f).next();
-            buffer.vertex(matrix, (float) end.x, (float) end.y, (float) (end.z + offset))
+            buffer.vertex(matrix, endX, endY, (float) (prediction.getPointZ(i + 1) + offset))
                     .color(endR, endG, endB, endAlpha * 0.7f).next();
         }
     }
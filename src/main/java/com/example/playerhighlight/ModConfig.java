@@ -28,6 +28,7 @@ public class ModConfig {
     private boolean bowPreviewTrajectoryEnabled = true;
     private boolean bowPreviewLandingMarkerEnabled = true;
     private boolean bowPreviewSimulateInaccuracy = true;
+    private boolean bowPreviewSpreadEnabled = false;
     private double nearbyWarningRange = 20.0;
     private int bowPreviewMaxTicks = 200;
 
@@ -41,6 +42,11 @@ public class ModConfig {
     private double fireballGravity = 0.0;
     private double fireballDrag = 1.0;
 
+    // 性能配置
+    private boolean coarseSteppingEnabled = true;
+    private double trajectorySimplifyTolerance = 0.15;  // 轨迹折线简化容差（格），0 表示不简化
+    private double simulationBudgetMs = 8.0;  // 每个客户端 tick 所有轨迹模拟共享的时间预算（毫秒）
+
     // 校准系统配置
     private boolean autoCalibrationEnabled = true;
     private boolean debugMode = false;
@@ -81,6 +87,8 @@ public class ModConfig {
                         props.getProperty("bowPreviewLandingMarkerEnabled", "true"));
                 config.bowPreviewSimulateInaccuracy = Boolean.parseBoolean(
                         props.getProperty("bowPreviewSimulateInaccuracy", "true"));
+                config.bowPreviewSpreadEnabled = Boolean.parseBoolean(
+                        props.getProperty("bowPreviewSpreadEnabled", "false"));
                 // 预瞄最大模拟 tick：对非法/越界值进行修正并写回配置文件
                 String rawPreviewTicks = props.getProperty("bowPreviewMaxTicks");
                 int loadedPreviewTicks = 200;
@@ -128,6 +136,18 @@ public class ModConfig {
                 shouldSave |= !rawBoolEquals(props, "bowPreviewSimulateInaccuracy", config.bowPreviewSimulateInaccuracy);
                 shouldSave |= props.getProperty("arrowWaterDrag") == null;
 
+                // 加载性能配置
+                config.coarseSteppingEnabled = Boolean.parseBoolean(
+                        props.getProperty("coarseSteppingEnabled", "true"));
+                shouldSave |= !rawBoolEquals(props, "coarseSteppingEnabled", config.coarseSteppingEnabled);
+                config.trajectorySimplifyTolerance = clampSimplifyTolerance(
+                        parseDouble(props, "trajectorySimplifyTolerance", 0.15));
+                shouldSave |= didChange(props, "trajectorySimplifyTolerance", config.trajectorySimplifyTolerance);
+                shouldSave |= props.getProperty("trajectorySimplifyTolerance") == null;
+                config.simulationBudgetMs = clampSimulationBudget(parseDouble(props, "simulationBudgetMs", 8.0));
+                shouldSave |= didChange(props, "simulationBudgetMs", config.simulationBudgetMs);
+                shouldSave |= props.getProperty("simulationBudgetMs") == null;
+
                 // 加载校准配置
                 config.autoCalibrationEnabled = Boolean.parseBoolean(
                         props.getProperty("autoCalibrationEnabled", "true"));
@@ -183,6 +203,7 @@ public class ModConfig {
             props.setProperty("bowPreviewTrajectoryEnabled", String.valueOf(bowPreviewTrajectoryEnabled));
             props.setProperty("bowPreviewLandingMarkerEnabled", String.valueOf(bowPreviewLandingMarkerEnabled));
             props.setProperty("bowPreviewSimulateInaccuracy", String.valueOf(bowPreviewSimulateInaccuracy));
+            props.setProperty("bowPreviewSpreadEnabled", String.valueOf(bowPreviewSpreadEnabled));
             props.setProperty("bowPreviewMaxTicks", String.valueOf(bowPreviewMaxTicks));
 
             // 保存物理参数
@@ -195,6 +216,11 @@ public class ModConfig {
             props.setProperty("fireballGravity", String.valueOf(fireballGravity));
             props.setProperty("fireballDrag", String.valueOf(fireballDrag));
 
+            // 保存性能配置
+            props.setProperty("coarseSteppingEnabled", String.valueOf(coarseSteppingEnabled));
+            props.setProperty("trajectorySimplifyTolerance", String.valueOf(trajectorySimplifyTolerance));
+            props.setProperty("simulationBudgetMs", String.valueOf(simulationBudgetMs));
+
             // 保存校准配置
             props.setProperty("autoCalibrationEnabled", String.valueOf(autoCalibrationEnabled));
             props.setProperty("debugMode", String.valueOf(debugMode));
@@ -275,6 +301,20 @@ public class ModConfig {
         return Math.max(0.05, Math.min(1.0, value));
     }
 
+    private static double clampSimplifyTolerance(double value) {
+        if (!Double.isFinite(value)) {
+            return 0.15;
+        }
+        return Math.max(0.0, Math.min(1.0, value));
+    }
+
+    private static double clampSimulationBudget(double value) {
+        if (!Double.isFinite(value)) {
+            return 8.0;
+        }
+        return Math.max(1.0, Math.min(50.0, value));
+    }
+
     private static boolean rawBoolEquals(Properties props, String key, boolean nowValue) {
         String raw = props.getProperty(key);
         if (raw == null) {
@@ -348,6 +388,18 @@ public class ModConfig {
         save();
     }
 
+    /**
+     * 是否显示预瞄散布范围（按原版随机偏移多次模拟得到的落点椭圆）
+     */
+    public boolean isBowPreviewSpreadEnabled() {
+        return bowPreviewSpreadEnabled;
+    }
+
+    public void setBowPreviewSpreadEnabled(boolean enabled) {
+        this.bowPreviewSpreadEnabled = enabled;
+        save();
+    }
+
     public int getBowPreviewMaxTicks() {
         return bowPreviewMaxTicks;
     }
@@ -450,6 +502,47 @@ public class ModConfig {
         save();
     }
 
+    // 性能配置 getters/setters
+
+    /**
+     * 是否启用粗步进：空旷区域按闭式解成段跳过碰撞检测（结果与逐 tick 检测一致）
+     */
+    public boolean isCoarseSteppingEnabled() {
+        return coarseSteppingEnabled;
+    }
+
+    public void setCoarseSteppingEnabled(boolean enabled) {
+        this.coarseSteppingEnabled = enabled;
+        save();
+    }
+
+    /**
+     * 轨迹折线简化容差（格）：按 tick 插值的轨迹位置与逐 tick 模拟的偏差不超过该值，0 表示按固定间隔保存轨迹点
+     *
+     * 默认 0.15（小于箭碰撞箱的半宽 0.25）：满拉弓的平射与吊射比每 3 tick 存一个点少约 20%~30%，
+     * 只受阻力减速的火球少约 60%；0.05 时弧线上约每 2 tick 保留一个点，反而比固定间隔更多。
+     */
+    public double getTrajectorySimplifyTolerance() {
+        return trajectorySimplifyTolerance;
+    }
+
+    public void setTrajectorySimplifyTolerance(double tolerance) {
+        this.trajectorySimplifyTolerance = clampSimplifyTolerance(tolerance);
+        save();
+    }
+
+    /**
+     * 每个客户端 tick 的轨迹模拟时间预算（毫秒，追踪与预瞄共享）：超出后未完成的模拟在下一 tick 继续
+     */
+    public double getSimulationBudgetMs() {
+        return simulationBudgetMs;
+    }
+
+    public void setSimulationBudgetMs(double budgetMs) {
+        this.simulationBudgetMs = clampSimulationBudget(budgetMs);
+        save();
+    }
+
     // 校准配置 getters/setters
 
     public boolean isAutoCalibrationEnabled() {
@@ -0,0 +1,17 @@
+package com.example.playerhighlight;
+
+/**
+ * 由 EntityOutlineMixin 混入 Entity 的发光轮廓状态
+ *
+ * 弹道追踪器在开始/停止追踪时写入，玩家透视每 tick 写入；
+ * 渲染时 isGlowing() 与 getTeamColorValue() 只读取这两个字段，不再做类型判断和查表。
+ * 仅客户端线程读写。
+ */
+public interface OutlineTarget {
+
+    boolean playerhighlight$isOutlined();
+
+    int playerhighlight$getOutlineColor();
+
+    void playerhighlight$setOutline(boolean outlined, int color);
+}
@@ -2,16 +2,9 @@ package com.example.playerhighlight;
 
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.projectile.*;
-import net.minecraft.util.hit.BlockHitResult;
-import net.minecraft.util.hit.HitResult;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.world.RaycastContext;
 import net.minecraft.world.World;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * 物理模拟器 - 用于预测弹道轨迹
  *
@@ -22,12 +15,21 @@ import java.util.List;
 public class PhysicsSimulator {
 
     // 优化参数
-    private static final int RAYCAST_INTERVAL = 1;  // 每 tick 检测一次碰撞（提升落点精度）
-    private static final int TRAJECTORY_SAVE_INTERVAL = 3;  // 每3 tick 存储一个轨迹点
-    private static final double MIN_VELOCITY_SQUARED = 0.001;  // 速度阈值
+    static final int RAYCAST_INTERVAL = 1;  // 每 tick 检测一次碰撞（提升落点精度）
+    static final int TRAJECTORY_SAVE_INTERVAL = 3;  // 未启用折线简化时每3 tick 存储一个轨迹点
+    static final double MIN_VELOCITY_SQUARED = 0.001;  // 速度阈值
     private static final double LOW_SPEED_GROUND_CHECK_DISTANCE = 0.5;
     private static final double LOW_SPEED_GROUND_SNAP_EPSILON = 0.06;
 
+    // 粗步进：空旷区域按闭式解估计一段轨迹的包围盒，确认无碰撞/流体后整段跳过逐 tick 检测
+    static final int COARSE_MAX_WINDOW_TICKS = 16;
+    static final int COARSE_MIN_WINDOW_TICKS = 4;
+    static final int COARSE_RETRY_TICKS = 4;  // 附近有地形时，逐 tick 检测若干 tick 后再尝试
+    private static final double COARSE_BOUND_PADDING = 1.0e-3;  // 覆盖闭式解与递推的舍入差异及射线外扩
+
+    // 分段执行：每隔若干 tick 检查一次截止时间（System.nanoTime 本身约几十纳秒，不逐 tick 调用）
+    static final int DEADLINE_CHECK_TICKS = 8;
+
     /**
      * 预测弹道轨迹
      *
@@ -38,15 +40,16 @@ public class PhysicsSimulator {
      * @return 预测结果
      */
     public static ProjectilePrediction predictTrajectory(Entity projectile, String typeId, World world, int maxTicks) {
-        return predictTrajectoryFromState(
-                projectile.getPos(),
-                projectile.getVelocity(),
-                typeId,
-                world,
-                maxTicks,
-                projectile,
-                projectile.hasNoGravity()
-        );
+        return predictTrajectory(projectile, typeId, world, maxTicks,
+                new TrajectoryBuffer((maxTicks / TRAJECTORY_SAVE_INTERVAL) + 3));
+    }
+
+    /**
+     * 预测弹道轨迹（轨迹点写入调用方持有的可复用缓冲区）
+     */
+    public static ProjectilePrediction predictTrajectory(Entity projectile, String typeId, World world, int maxTicks,
+                                                         TrajectoryBuffer buffer) {
+        return simulate(PredictionJob.forEntity(projectile, typeId, world, maxTicks), buffer);
     }
 
     /**
@@ -56,74 +59,199 @@ public class PhysicsSimulator {
                                                                   World world, int maxTicks,
                                                                   Entity raycastEntity,
                                                                   boolean noGravity) {
-        long startTime = System.nanoTime();
+        return simulate(
+                pos.x, pos.y, pos.z,
+                velocity.x, velocity.y, velocity.z,
+                typeId,
+                world,
+                maxTicks,
+                raycastEntity,
+                noGravity,
+                new TrajectoryBuffer((maxTicks / TRAJECTORY_SAVE_INTERVAL) + 3)
+        );
+    }
+
+    /**
+     * 在任意碰撞世界上从给定初始状态模拟（不读取注册表/配置，可脱离客户端运行，如基准测试与录制布局回放）
+     */
+    public static ProjectilePrediction predictTrajectoryFromState(Vec3d pos, Vec3d velocity,
+                                                                  double gravity, double drag,
+                                                                  CollisionWorld.Provider collision,
+                                                                  int maxTicks) {
+        PredictionJob job = PredictionJob.headless(
+                pos.x, pos.y, pos.z,
+                velocity.x, velocity.y, velocity.z,
+                gravity,
+                drag,
+                Double.NaN,
+                maxTicks,
+                collision
+        );
+        return simulate(job, new TrajectoryBuffer((maxTicks / TRAJECTORY_SAVE_INTERVAL) + 3));
+    }
 
-        if (typeId == null || typeId.isEmpty()) {
-            typeId = "UNKNOWN";
+    /**
+     * 在当前线程同步模拟（参数在调用时从注册表/配置捕获）
+     */
+    public static ProjectilePrediction simulate(double posX, double posY, double posZ,
+                                                double velX, double velY, double velZ,
+                                                String typeId, World world, int maxTicks,
+                                                Entity raycastEntity, boolean noGravity,
+                                                TrajectoryBuffer trajectory) {
+        PredictionJob job = PredictionJob.capture(
+                posX, posY, posZ,
+                velX, velY, velZ,
+                typeId,
+                world,
+                maxTicks,
+                noGravity,
+                raycastEntity
+        );
+        return simulate(job, trajectory);
+    }
+
+    /**
+     * 原始类型模拟内核：位置/速度均以 double 积分，轨迹点写入调用方持有的 packed 缓冲区。
+     *
+     * <p>逐 tick 的运算顺序与旧的 Vec3d 实现完全一致，因此结果逐位相同。
+     * 缓冲区会被清空并复用；返回的预测结果持有轨迹点的紧凑副本，之后可继续复用缓冲区。</p>
+     *
+     * <p>只读取 job 中捕获的参数与碰撞世界（CollisionWorld），也可在内存体素网格上脱离客户端运行。
+     * 碰撞世界为 CollisionSnapshot 时必须在客户端线程调用（后台线程上区块段可能尚未就绪，
+     * 应使用 begin/advance/finish 并在未就绪时暂停，见 PredictionExecutor）。</p>
+     */
+    public static ProjectilePrediction simulate(PredictionJob job, TrajectoryBuffer trajectory) {
+        Progress progress = begin(job, trajectory);
+        advance(job, progress, Long.MAX_VALUE);
+        return finish(job, progress);
+    }
+
+    /**
+     * 从任务的初始状态开始一次可分段执行的模拟（轨迹点写入给定缓冲区，缓冲区会被清空）
+     */
+    static Progress begin(PredictionJob job, TrajectoryBuffer trajectory) {
+        // 启用折线简化时逐 tick 保存，构建结果前再按容差简化（按 tick 插值的位置误差不超过容差，弯曲或减速处保留更多点）
+        int saveInterval = trajectorySaveInterval(job);
+        trajectory.clear();
+        trajectory.ensureCapacity((job.maxTicks / saveInterval) + 3);
+        trajectory.add(job.posX, job.posY, job.posZ, 0);
+        return new Progress(job, trajectory, saveInterval);
+    }
+
+    /**
+     * 推进模拟，直到结束或超过截止时间（每 DEADLINE_CHECK_TICKS tick 检查一次，每次调用至少推进这么多 tick）
+     *
+     * <p>积分状态保存在 progress 中，下次调用从中断处继续；分段执行与一次执行完的结果逐位一致。
+     * 碰撞世界报告本 tick 的区域尚未就绪（{@link CollisionWorld#isResident}）时同样提前返回未结束。</p>
+     *
+     * @param deadlineNs System.nanoTime() 截止时间；Long.MAX_VALUE 表示不限
+     * @return 模拟是否已结束
+     */
+    static boolean advance(PredictionJob job, Progress progress, long deadlineNs) {
+        if (progress.finished) {
+            return true;
         }
+        long startTime = System.nanoTime();
+        boolean timed = deadlineNs != Long.MAX_VALUE;
 
-        // 从动态注册表获取物理参数
-        DynamicProjectileRegistry registry = DynamicProjectileRegistry.getInstance();
-        DynamicProjectileRegistry.ProjectileTypeData typeData = registry.getOrCreateType(typeId);
-        double gravity = noGravity ? 0.0 : typeData.getGravity();
-        double drag = typeData.getDrag();
-        ModConfig config = ModConfig.getInstance();
-        boolean simulateFluidDrag = config.isSimulateFluidDrag();
-        boolean arrowLike = BowEnchantmentDetector.TYPE_ARROW.equals(typeId);
-
-        // 模拟轨迹
-        int expectedPoints = (maxTicks / TRAJECTORY_SAVE_INTERVAL) + 3;
-        List<Vec3d> trajectory = new ArrayList<>(expectedPoints);
-        trajectory.add(pos);
-
-        Vec3d currentPos = pos;
-        double velX = velocity.x;
-        double velY = velocity.y;
-        double velZ = velocity.z;
-        boolean hitBlock = false;
-        int ticksSimulated = 0;
-
-        for (int tick = 0; tick < maxTicks; tick++) {
-            ticksSimulated = tick + 1;
+        int maxTicks = job.maxTicks;
+        double gravity = job.gravity;
+        double drag = job.drag;
+        CollisionWorld collision = job.collision.open();
+        PlayerSpatialHash players = job.players;
+        TrajectoryBuffer trajectory = progress.trajectory;
+        double[] hit = progress.hit;
+        double[] entityHit = progress.entityHit;
+        int saveInterval = progress.saveInterval;
+
+        double x = progress.x;
+        double y = progress.y;
+        double z = progress.z;
+        double velX = progress.velX;
+        double velY = progress.velY;
+        double velZ = progress.velZ;
+        int ticksSimulated = progress.ticksSimulated;
+        int clearTicks = progress.clearTicks;  // 剩余可跳过检测的 tick（包围盒已确认无碰撞/流体）
+        int nextCoarseAttempt = progress.nextCoarseAttempt;
+        boolean finished = true;
+
+        int tick = progress.nextTick;
+        int steps = 0;
+        for (; tick < maxTicks; tick++) {
+            if (timed && ++steps % DEADLINE_CHECK_TICKS == 0 && System.nanoTime() > deadlineNs) {
+                finished = false;
+                break;
+            }
+            if (clearTicks == 0 && tick >= nextCoarseAttempt) {
+                clearTicks = findClearWindow(collision, x, y, z, velX, velY, velZ,
+                        gravity, drag, job.simulateFluidDrag, maxTicks - tick);
+                if (clearTicks == 0) {
+                    nextCoarseAttempt = tick + COARSE_RETRY_TICKS;
+                }
+            }
+            // 位置/速度仍按递推逐 tick 计算，只跳过必然落空的检测，因此结果与逐 tick 检测逐位一致
+            boolean clear = clearTicks > 0;
+            if (clear) {
+                clearTicks--;
+            }
 
             // Minecraft projectile movement is: move by current velocity, then apply drag/gravity to velocity.
-            Vec3d nextPos = new Vec3d(
-                    currentPos.x + velX,
-                    currentPos.y + velY,
-                    currentPos.z + velZ
-            );
+            double nextX = x + velX;
+            double nextY = y + velY;
+            double nextZ = z + velZ;
+
+            // 线段高于经过的所有列的地形时同样跳过检测
+            if (!clear) {
+                clear = isSegmentAboveTerrain(collision, x, y, z, nextX, nextY, nextZ);
+            }
+            // 本 tick 要检测的区域尚未就绪（后台线程上的 CollisionSnapshot）：停在本 tick 开始处，就绪后继续
+            if (!clear && !isSegmentResident(collision, x, y, z, nextX, nextY, nextZ)) {
+                finished = false;
+                break;
+            }
+            ticksSimulated = tick + 1;
 
             // 每 tick 检测一次碰撞（提升落点精度）
-            if (tick % RAYCAST_INTERVAL == 0) {
-                BlockHitResult hit = world.raycast(new RaycastContext(
-                        currentPos,
-                        nextPos,
-                        RaycastContext.ShapeType.COLLIDER,
-                        RaycastContext.FluidHandling.NONE,
-                        raycastEntity
-                ));
-
-                if (hit.getType() != HitResult.Type.MISS) {
-                    // 碰撞到方块
-                    nextPos = hit.getPos();
-                    hitBlock = true;
-                    currentPos = nextPos;
-                    trajectory.add(nextPos);
-                    break;
-                }
+            boolean blockHit = !clear && tick % RAYCAST_INTERVAL == 0
+                    && collision.raycast(x, y, z, nextX, nextY, nextZ, hit);
+
+            // 玩家命中：与原版一致，只检测到方块命中点（或本 tick 终点）为止的线段，命中玩家优先
+            int hitPlayer = blockHit
+                    ? players.raycast(x, y, z, hit[0], hit[1], hit[2], job.excludedEntityId, entityHit)
+                    : players.raycast(x, y, z, nextX, nextY, nextZ, job.excludedEntityId, entityHit);
+            if (hitPlayer >= 0) {
+                x = entityHit[0];
+                y = entityHit[1];
+                z = entityHit[2];
+                progress.hitEntityId = players.getEntityId(hitPlayer);
+                progress.hitEntityName = players.getName(hitPlayer);
+                trajectory.add(x, y, z, ticksSimulated);
+                break;
             }
 
-            currentPos = nextPos;
+            if (blockHit) {
+                // 碰撞到方块
+                x = hit[0];
+                y = hit[1];
+                z = hit[2];
+                progress.hitBlock = true;
+                trajectory.add(x, y, z, ticksSimulated);
+                break;
+            }
+
+            x = nextX;
+            y = nextY;
+            z = nextZ;
 
-            // 每隔 TRAJECTORY_SAVE_INTERVAL tick 存储一个轨迹点
-            if (tick % TRAJECTORY_SAVE_INTERVAL == 0) {
-                trajectory.add(currentPos);
+            // 每隔 saveInterval tick 存储一个轨迹点
+            if (tick % saveInterval == 0) {
+                trajectory.add(x, y, z, ticksSimulated);
             }
 
             // 应用空气/流体阻力（影响下一 tick 速度）
             double tickDrag = drag;
-            if (simulateFluidDrag && arrowLike && isInAnyFluid(world, currentPos)) {
-                tickDrag = config.getArrowWaterDrag();
+            if (!clear && job.simulateFluidDrag && collision.isInFluid(x, y, z)) {
+                tickDrag = job.fluidDrag;
             }
             velX *= tickDrag;
             velY = velY * tickDrag - gravity;
@@ -132,53 +260,240 @@ public class PhysicsSimulator {
             // 速度过低时提前终止（性能优化）
             // 注意：不能在半空中仅因速度低就终止，否则会导致“向上射箭”落点预测停在半空。
             double speedSq = velX * velX + velY * velY + velZ * velZ;
-            if (speedSq < MIN_VELOCITY_SQUARED) {
-                Vec3d snapped = trySnapToNearbyGround(world, raycastEntity, currentPos);
-                if (snapped != null) {
-                    currentPos = snapped;
-                    trajectory.add(currentPos);
+            if (!clear && speedSq < MIN_VELOCITY_SQUARED) {
+                if (trySnapToNearbyGround(collision, x, y, z, hit)) {
+                    x = hit[0];
+                    y = hit[1];
+                    z = hit[2];
+                    trajectory.add(x, y, z, ticksSimulated);
                     break;
                 }
             }
         }
 
-        long endTime = System.nanoTime();
-        long calculationTime = endTime - startTime;
+        progress.x = x;
+        progress.y = y;
+        progress.z = z;
+        progress.velX = velX;
+        progress.velY = velY;
+        progress.velZ = velZ;
+        progress.ticksSimulated = ticksSimulated;
+        progress.clearTicks = clearTicks;
+        progress.nextCoarseAttempt = nextCoarseAttempt;
+        progress.nextTick = tick;
+        progress.finished = finished;
+        progress.elapsedNs += System.nanoTime() - startTime;
+        return finished;
+    }
+
+    /**
+     * 由已结束的模拟构建预测结果（简化轨迹并复制轨迹点）
+     */
+    static ProjectilePrediction finish(PredictionJob job, Progress progress) {
+        long startTime = System.nanoTime();
+        TrajectoryBuffer trajectory = progress.trajectory;
+        trajectory.simplify(job.simplifyTolerance);
+        double[] packedPoints = trajectory.toPackedArray();
+        int[] pointTicks = trajectory.toTickArray();
+        long calculationTime = progress.elapsedNs + (System.nanoTime() - startTime);
 
         return new ProjectilePrediction(
-                currentPos,
-                ticksSimulated,
-                trajectory,
-                hitBlock,
+                new Vec3d(progress.x, progress.y, progress.z),
+                progress.ticksSimulated,
+                packedPoints,
+                pointTicks,
+                progress.hitBlock,
+                progress.hitEntityId,
+                progress.hitEntityName,
                 calculationTime
         );
     }
 
-    private static boolean isInAnyFluid(World world, Vec3d pos) {
-        if (world == null || pos == null) {
+    /**
+     * 可分段执行的模拟的积分状态（位置、速度、tick、粗步进状态、已保存的轨迹点）
+     *
+     * 未结束时即为“部分完成”的预测：保存后可在之后的 tick、任意线程上继续（同一时间只能由一个线程推进）。
+     */
+    static final class Progress {
+        private final TrajectoryBuffer trajectory;
+        private final int saveInterval;
+        private final double[] hit = new double[3];
+        private final double[] entityHit = new double[3];
+
+        private double x;
+        private double y;
+        private double z;
+        private double velX;
+        private double velY;
+        private double velZ;
+        private int nextTick = 0;
+        private int ticksSimulated = 0;
+        private int clearTicks = 0;
+        private int nextCoarseAttempt;
+        private boolean hitBlock = false;
+        private int hitEntityId = -1;
+        private String hitEntityName = null;
+        private boolean finished = false;
+        private long elapsedNs = 0;
+
+        private Progress(PredictionJob job, TrajectoryBuffer trajectory, int saveInterval) {
+            this.trajectory = trajectory;
+            this.saveInterval = saveInterval;
+            this.x = job.posX;
+            this.y = job.posY;
+            this.z = job.posZ;
+            this.velX = job.velX;
+            this.velY = job.velY;
+            this.velZ = job.velZ;
+            this.nextCoarseAttempt = job.coarseStepping ? 0 : Integer.MAX_VALUE;
+        }
+
+        /**
+         * 是否尚未结束（部分完成）
+         */
+        boolean isPartial() {
+            return !finished;
+        }
+
+        /**
+         * 已模拟的 tick 数
+         */
+        int getTicksSimulated() {
+            return ticksSimulated;
+        }
+    }
+
+    /**
+     * 轨迹点保存间隔：启用折线简化时逐 tick 保存（由简化决定保留哪些点）
+     */
+    static int trajectorySaveInterval(PredictionJob job) {
+        return job.simplifyTolerance > 0.0 ? 1 : TRAJECTORY_SAVE_INTERVAL;
+    }
+
+    /**
+     * 低速时检测脚下是否贴地，贴地则把落点吸附到地面
+     *
+     * @param snappedOut 吸附成功时写入地面位置
+     */
+    static boolean trySnapToNearbyGround(CollisionWorld collision, double x, double y, double z,
+                                          double[] snappedOut) {
+        if (!collision.probeGround(x, y, z, LOW_SPEED_GROUND_CHECK_DISTANCE, snappedOut)) {
             return false;
         }
-        BlockPos blockPos = BlockPos.ofFloored(pos);
-        return !world.getFluidState(blockPos).isEmpty();
+
+        double verticalGap = y - snappedOut[1];
+        return verticalGap <= LOW_SPEED_GROUND_SNAP_EPSILON;
     }
 
-    private static Vec3d trySnapToNearbyGround(World world, Entity raycastEntity, Vec3d pos) {
-        BlockHitResult downHit = world.raycast(new RaycastContext(
-                pos,
-                pos.subtract(0, LOW_SPEED_GROUND_CHECK_DISTANCE, 0),
-                RaycastContext.ShapeType.COLLIDER,
-                RaycastContext.FluidHandling.NONE,
-                raycastEntity
-        ));
-        if (downHit.getType() == HitResult.Type.MISS) {
-            return null;
+    /**
+     * 粗步进：从当前状态起找出一段可以跳过碰撞检测的 tick 数（由长到短尝试，0 表示需要逐 tick 检测）
+     *
+     * <p>阻力恒定时速度递推 v' = d*v - g 有闭式解：
+     * 水平方向位移单调，n tick 后为 v0 * S(n)，S(n) = (1 - d^n) / (1 - d)；
+     * 竖直方向位移为 vy0 * S(n) - g * T(n)，T(n) = (n - S(n)) / (1 - d)，最高点在 vy 首次变为非正的 tick。
+     * 由此得到整段轨迹的包围盒（向下额外包含低速贴地探测的距离），
+     * 包围盒内没有碰撞形状（需要时也没有流体）则这段内的射线、贴地与流体检测必然落空。</p>
+     */
+    static int findClearWindow(CollisionWorld collision,
+                               double x, double y, double z,
+                               double velX, double velY, double velZ,
+                               double gravity, double drag, boolean requireNoFluid, int remainingTicks) {
+        if (!(drag > 0.0 && drag <= 1.0) || gravity < 0.0) {
+            return 0;
+        }
+        for (int window = Math.min(COARSE_MAX_WINDOW_TICKS, remainingTicks);
+             window >= COARSE_MIN_WINDOW_TICKS;
+             window >>= 1) {
+            double horizontal = geometricSum(drag, window);
+            double endX = x + velX * horizontal;
+            double endZ = z + velZ * horizontal;
+            double endY = y + verticalDisplacement(velY, gravity, drag, window);
+
+            double maxY = Math.max(y, endY);
+            if (velY > 0.0) {
+                int apex = Math.min(window, apexTick(velY, gravity, drag));
+                maxY = Math.max(maxY, y + verticalDisplacement(velY, gravity, drag, apex));
+            }
+            double minX = Math.min(x, endX) - COARSE_BOUND_PADDING;
+            double minY = Math.min(y, endY) - LOW_SPEED_GROUND_CHECK_DISTANCE - COARSE_BOUND_PADDING;
+            double minZ = Math.min(z, endZ) - COARSE_BOUND_PADDING;
+            double maxX = Math.max(x, endX) + COARSE_BOUND_PADDING;
+            double maxZ = Math.max(z, endZ) + COARSE_BOUND_PADDING;
+
+            // 区块段全空，或整段都高于经过各列的最高占用方块（列高度同时计入了流体）
+            if (collision.isRegionClear(minX, minY, minZ, maxX, maxY + COARSE_BOUND_PADDING, maxZ, requireNoFluid)
+                    || collision.isAboveTerrain(minX, minZ, maxX, maxZ, minY)) {
+                return window;
+            }
         }
+        return 0;
+    }
+
+    /**
+     * 本 tick 的射线、流体与贴地检测会查询的区域是否都已就绪（范围与 isSegmentAboveTerrain 相同）
+     */
+    private static boolean isSegmentResident(CollisionWorld collision,
+                                             double x, double y, double z,
+                                             double nextX, double nextY, double nextZ) {
+        return collision.isResident(
+                Math.min(x, nextX) - COARSE_BOUND_PADDING,
+                Math.min(y, nextY) - LOW_SPEED_GROUND_CHECK_DISTANCE - COARSE_BOUND_PADDING,
+                Math.min(z, nextZ) - COARSE_BOUND_PADDING,
+                Math.max(x, nextX) + COARSE_BOUND_PADDING,
+                Math.max(y, nextY) + COARSE_BOUND_PADDING,
+                Math.max(z, nextZ) + COARSE_BOUND_PADDING
+        );
+    }
+
+    /**
+     * 单 tick 线段（含向下的贴地探测）是否高于经过的所有列的地形/流体：
+     * 此时该 tick 的射线、贴地与流体检测必然落空
+     */
+    static boolean isSegmentAboveTerrain(CollisionWorld collision,
+                                         double x, double y, double z,
+                                         double nextX, double nextY, double nextZ) {
+        return collision.isAboveTerrain(
+                Math.min(x, nextX) - COARSE_BOUND_PADDING,
+                Math.min(z, nextZ) - COARSE_BOUND_PADDING,
+                Math.max(x, nextX) + COARSE_BOUND_PADDING,
+                Math.max(z, nextZ) + COARSE_BOUND_PADDING,
+                Math.min(y, nextY) - LOW_SPEED_GROUND_CHECK_DISTANCE - COARSE_BOUND_PADDING
+        );
+    }
 
-        double verticalGap = pos.y - downHit.getPos().y;
-        if (verticalGap <= LOW_SPEED_GROUND_SNAP_EPSILON) {
-            return downHit.getPos();
+    /** S(n) = 1 + d + ... + d^(n-1) */
+    private static double geometricSum(double drag, int ticks) {
+        if (drag == 1.0) {
+            return ticks;
         }
+        return (1.0 - Math.pow(drag, ticks)) / (1.0 - drag);
+    }
+
+    /** n tick 后的竖直位移：sum(vy_k)，vy_k = d^k * vy0 - g * S(k) */
+    private static double verticalDisplacement(double velY, double gravity, double drag, int ticks) {
+        double sum = geometricSum(drag, ticks);
+        double gravityTerm = drag == 1.0
+                ? ticks * (ticks - 1) / 2.0
+                : (ticks - sum) / (1.0 - drag);
+        return velY * sum - gravity * gravityTerm;
+    }
 
-        return null;
+    /** 竖直速度首次变为非正的 tick（此时竖直位置最高） */
+    private static int apexTick(double velY, double gravity, double drag) {
+        if (gravity <= 0.0) {
+            return Integer.MAX_VALUE;
+        }
+        double ticks;
+        if (drag == 1.0) {
+            ticks = velY / gravity;
+        } else {
+            // vy_k = d^k * (vy0 + c) - c，c = g / (1 - d)
+            double c = gravity / (1.0 - drag);
+            ticks = Math.log(c / (velY + c)) / Math.log(drag);
+        }
+        if (!Double.isFinite(ticks) || ticks > Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(0, (int) Math.ceil(ticks));
     }
 }
@@ -2,7 +2,9 @@ package com.example.playerhighlight;
 
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.util.InputUtil;
+import net.minecraft.entity.player.PlayerEntity;
 import org.lwjgl.glfw.GLFW;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +12,7 @@ import org.slf4j.LoggerFactory;
 	public class PlayerHighlightClient implements ClientModInitializer {
 		public static final Logger LOGGER = LoggerFactory.getLogger("playerhighlight");
 		private static volatile boolean highlightEnabled = false;
+		private static boolean playerOutlinesShown = false;  // 上一 tick 是否给玩家设置了发光轮廓
 
 	@Override
 	public void onInitializeClient() {
@@ -41,6 +44,8 @@ import org.slf4j.LoggerFactory;
 				highlightEnabled = tabPressed;
 			}
 
+			updatePlayerOutlines(client);
+
 			// Flush learned parameters to disk (debounced)
 			DynamicProjectileRegistry.getInstance().flushIfDue();
 		});
@@ -52,12 +57,29 @@ import org.slf4j.LoggerFactory;
 			LookPvpCommand.register();
 
 			// Initialize projectile tracking system
+			CollisionSnapshot.initialize();
+			PredictionExecutor.initialize();
 			ProjectileTrackerClient.initialize();
 			LandingPointRenderer.initialize();
 			BowPreviewClient.initialize();
 			BowPreviewRenderer.initialize();
 		}
 
+	/**
+	 * 每 tick 把透视状态与头盔颜色写到玩家实体上（渲染时只读字段，见 OutlineTarget）
+	 */
+	private static void updatePlayerOutlines(MinecraftClient client) {
+		boolean enabled = isHighlightEnabled();
+		if (client.world == null || (!enabled && !playerOutlinesShown)) {
+			return;
+		}
+		for (PlayerEntity player : client.world.getPlayers()) {
+			int color = enabled ? RenderHelper.getPlayerOutlineColor(player) : 0xFFFFFF;
+			((OutlineTarget) player).playerhighlight$setOutline(enabled, color);
+		}
+		playerOutlinesShown = enabled;
+	}
+
 	/**
 	 * 检查玩家透视是否启用（配置开关 && TAB键按下）
 	 */
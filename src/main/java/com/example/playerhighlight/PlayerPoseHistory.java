@@ -0,0 +1,221 @@
+package com.example.playerhighlight;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 每个玩家最近若干 tick 的眼睛位置与视线方向（环形缓冲区）
+ *
+ * 弹道在客户端出现时，射手的显示位置已经是一两 tick 之后（实体插值），
+ * 横向走位时用最新姿态推断射手会出错。这里保留最近 HISTORY_TICKS 个 tick 的姿态，
+ * 推断时按弹道的估计发射 tick 取当时的姿态。
+ *
+ * 姿态以原始类型数组存放，每 tick 记录时不分配对象；玩家按客户端实体 ID 索引，
+ * 只在客户端线程访问。
+ *
+ * 记录的同时按最新眼睛位置建立均匀网格（每 tick 重建，复用数组），
+ * 推断射手时只需查询弹道附近的几个网格，而不是遍历所有玩家。
+ */
+public final class PlayerPoseHistory {
+
+    public static final int HISTORY_TICKS = 16;  // 2 的幂，环形下标用掩码
+    private static final int MASK = HISTORY_TICKS - 1;
+
+    private final int entityId;
+    private final String name;
+    private final double[] eyeX = new double[HISTORY_TICKS];
+    private final double[] eyeY = new double[HISTORY_TICKS];
+    private final double[] eyeZ = new double[HISTORY_TICKS];
+    private final double[] lookX = new double[HISTORY_TICKS];
+    private final double[] lookY = new double[HISTORY_TICKS];
+    private final double[] lookZ = new double[HISTORY_TICKS];
+    private int newestTick;
+    private int count;
+
+    private PlayerPoseHistory(int entityId, String name) {
+        this.entityId = entityId;
+        this.name = name;
+    }
+
+    // 实体 ID -> 姿态历史（仅客户端线程访问）
+    private static final Int2ObjectOpenHashMap<PlayerPoseHistory> histories = new Int2ObjectOpenHashMap<>();
+
+    // 眼睛位置网格：格子 -> 链表头（gridEntries 下标），gridNext 串起同一格子里的玩家
+    private static final double CELL_SIZE = 8.0;
+    // 网格按最新位置建立，而查询比较的是几 tick 前的姿态：查询半径额外放宽，覆盖这几 tick 内的移动
+    private static final double GRID_SLACK = 4.0;
+    private static final Long2IntOpenHashMap cellHeads = new Long2IntOpenHashMap();
+    private static PlayerPoseHistory[] gridEntries = new PlayerPoseHistory[16];
+    private static int[] gridNext = new int[16];
+    private static int gridCount = 0;
+    private static final ObjectArrayList<PlayerPoseHistory> nearby = new ObjectArrayList<>();
+
+    static {
+        cellHeads.defaultReturnValue(-1);
+    }
+
+    /**
+     * 记录所有玩家本 tick 的姿态
+     *
+     * @param players 当前世界中的玩家
+     * @param tick 追踪器 tick
+     */
+    public static void record(List<? extends PlayerEntity> players, int tick) {
+        clearGrid();
+        for (int i = 0; i < players.size(); i++) {
+            PlayerEntity player = players.get(i);
+            PlayerPoseHistory history = histories.get(player.getId());
+            if (history == null) {
+                history = new PlayerPoseHistory(player.getId(), player.getName().getString());
+                histories.put(player.getId(), history);
+            }
+            history.add(tick, player);
+            history.insertIntoGrid();
+        }
+    }
+
+    /**
+     * 丢弃超过 HISTORY_TICKS 没有更新的玩家（已离开或不在视距内）
+     */
+    public static void prune(int tick) {
+        ObjectIterator<PlayerPoseHistory> iterator = histories.values().iterator();
+        while (iterator.hasNext()) {
+            if (tick - iterator.next().newestTick >= HISTORY_TICKS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public static void clear() {
+        histories.clear();
+        clearGrid();
+    }
+
+    /**
+     * 本 tick 眼睛位置在指定点附近的玩家
+     *
+     * 只做网格粗筛，精确的距离判断由调用方对具体 tick 的姿态进行。
+     * 返回的列表被复用，在下一次查询前有效。
+     *
+     * @param radius 查询半径（格）
+     */
+    public static List<PlayerPoseHistory> near(double x, double y, double z, double radius) {
+        nearby.clear();
+        if (gridCount == 0) {
+            return nearby;
+        }
+        double reach = radius + GRID_SLACK;
+        int minCellX = cell(x - reach);
+        int minCellY = cell(y - reach);
+        int minCellZ = cell(z - reach);
+        int maxCellX = cell(x + reach);
+        int maxCellY = cell(y + reach);
+        int maxCellZ = cell(z + reach);
+        for (int cx = minCellX; cx <= maxCellX; cx++) {
+            for (int cy = minCellY; cy <= maxCellY; cy++) {
+                for (int cz = minCellZ; cz <= maxCellZ; cz++) {
+                    for (int index = cellHeads.get(cellKey(cx, cy, cz)); index >= 0; index = gridNext[index]) {
+                        nearby.add(gridEntries[index]);
+                    }
+                }
+            }
+        }
+        return nearby;
+    }
+
+    private static void clearGrid() {
+        cellHeads.clear();
+        Arrays.fill(gridEntries, 0, gridCount, null);
+        gridCount = 0;
+    }
+
+    private void insertIntoGrid() {
+        if (gridCount == gridEntries.length) {
+            gridEntries = Arrays.copyOf(gridEntries, gridCount * 2);
+            gridNext = Arrays.copyOf(gridNext, gridCount * 2);
+        }
+        int slot = newestTick & MASK;
+        long key = cellKey(cell(eyeX[slot]), cell(eyeY[slot]), cell(eyeZ[slot]));
+        gridEntries[gridCount] = this;
+        gridNext[gridCount] = cellHeads.get(key);
+        cellHeads.put(key, gridCount);
+        gridCount++;
+    }
+
+    private static int cell(double coordinate) {
+        return MathHelper.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long cellKey(int cx, int cy, int cz) {
+        return ((long) (cx & 0x1FFFFF) << 42) | ((long) (cy & 0x1FFFFF) << 21) | (long) (cz & 0x1FFFFF);
+    }
+
+    private void add(int tick, PlayerEntity player) {
+        if (count > 0 && tick == newestTick) {
+            return;
+        }
+        int slot = tick & MASK;
+        eyeX[slot] = player.getX();
+        eyeY[slot] = player.getY() + player.getStandingEyeHeight();
+        eyeZ[slot] = player.getZ();
+
+        // 与原版 Entity.getRotationVector 相同的换算，避免每 tick 分配 Vec3d
+        double pitch = Math.toRadians(player.getPitch());
+        double yaw = Math.toRadians(-player.getYaw());
+        double horizontal = Math.cos(pitch);
+        lookX[slot] = Math.sin(yaw) * horizontal;
+        lookY[slot] = -Math.sin(pitch);
+        lookZ[slot] = Math.cos(yaw) * horizontal;
+
+        // 跳过的 tick（玩家暂时不在视距内）不补齐：count 只统计连续的记录
+        count = (count > 0 && tick == newestTick + 1) ? Math.min(count + 1, HISTORY_TICKS) : 1;
+        newestTick = tick;
+    }
+
+    /**
+     * 取最接近指定 tick 的已记录姿态槽位：比最早记录还早时取最早一条，比最新记录晚时取最新一条
+     */
+    public int slotAt(int tick) {
+        int clamped = Math.max(newestTick - count + 1, Math.min(newestTick, tick));
+        return clamped & MASK;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getEyeX(int slot) {
+        return eyeX[slot];
+    }
+
+    public double getEyeY(int slot) {
+        return eyeY[slot];
+    }
+
+    public double getEyeZ(int slot) {
+        return eyeZ[slot];
+    }
+
+    public double getLookX(int slot) {
+        return lookX[slot];
+    }
+
+    public double getLookY(int slot) {
+        return lookY[slot];
+    }
+
+    public double getLookZ(int slot) {
+        return lookZ[slot];
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.playerhighlight;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 玩家碰撞箱的均匀网格索引（每 tick 构建一次，构建后不可变）
+ *
+ * 弹道每 tick 的线段只需查询其包围盒覆盖的少数几个网格，
+ * 因此加入玩家命中检测后模拟耗时不随玩家数量线性增长。
+ * 碰撞箱按原版弹道命中判定外扩 0.3 格；起点已在碰撞箱内的线段不算命中（射手自身的出膛段）。
+ * 网格以原始 long 键存放（fastutil），构建与查询都不装箱。
+ *
+ * 不可变，可被后台预测线程共享。
+ */
+public final class PlayerSpatialHash {
+
+    private static final double CELL_SIZE = 4.0;
+    private static final double HIT_MARGIN = 0.3;  // 原版 ProjectileUtil 对目标碰撞箱的外扩
+    private static final double EPSILON = 1.0E-7;
+
+    public static final PlayerSpatialHash EMPTY = new PlayerSpatialHash(new ArrayList<>());
+
+    // 每 tick 缓存（仅客户端线程访问）
+    private static PlayerSpatialHash current = EMPTY;
+    private static World currentWorld;
+    private static long currentTime = Long.MIN_VALUE;
+
+    private final int[] entityIds;
+    private final String[] names;
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] minZ;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final double[] maxZ;
+    private final Long2ObjectOpenHashMap<int[]> cells;
+
+    private PlayerSpatialHash(List<? extends PlayerEntity> players) {
+        int count = players.size();
+        entityIds = new int[count];
+        names = new String[count];
+        minX = new double[count];
+        minY = new double[count];
+        minZ = new double[count];
+        maxX = new double[count];
+        maxY = new double[count];
+        maxZ = new double[count];
+
+        Long2ObjectOpenHashMap<IntArrayList> building = new Long2ObjectOpenHashMap<>();
+        for (int i = 0; i < count; i++) {
+            PlayerEntity player = players.get(i);
+            Box box = player.getBoundingBox();
+            entityIds[i] = player.getId();
+            names[i] = player.getName().getString();
+            minX[i] = box.minX - HIT_MARGIN;
+            minY[i] = box.minY - HIT_MARGIN;
+            minZ[i] = box.minZ - HIT_MARGIN;
+            maxX[i] = box.maxX + HIT_MARGIN;
+            maxY[i] = box.maxY + HIT_MARGIN;
+            maxZ[i] = box.maxZ + HIT_MARGIN;
+
+            for (int cx = cell(minX[i]); cx <= cell(maxX[i]); cx++) {
+                for (int cy = cell(minY[i]); cy <= cell(maxY[i]); cy++) {
+                    for (int cz = cell(minZ[i]); cz <= cell(maxZ[i]); cz++) {
+                        long key = cellKey(cx, cy, cz);
+                        IntArrayList indices = building.get(key);
+                        if (indices == null) {
+                            indices = new IntArrayList(2);
+                            building.put(key, indices);
+                        }
+                        indices.add(i);
+                    }
+                }
+            }
+        }
+
+        cells = new Long2ObjectOpenHashMap<>(building.size());
+        for (Long2ObjectMap.Entry<IntArrayList> entry : building.long2ObjectEntrySet()) {
+            cells.put(entry.getLongKey(), entry.getValue().toIntArray());
+        }
+    }
+
+    /**
+     * 获取当前 tick 的玩家索引（同一 tick 内多次调用只构建一次；必须在客户端线程调用）
+     */
+    public static PlayerSpatialHash forTick(World world) {
+        if (world == null) {
+            return EMPTY;
+        }
+        long time = world.getTime();
+        if (world != currentWorld || time != currentTime) {
+            List<PlayerEntity> players = new ArrayList<>();
+            for (PlayerEntity player : world.getPlayers()) {
+                if (player.isAlive() && !player.isSpectator()) {
+                    players.add(player);
+                }
+            }
+            current = players.isEmpty() ? EMPTY : new PlayerSpatialHash(players);
+            currentWorld = world;
+            currentTime = time;
+        }
+        return current;
+    }
+
+    public boolean isEmpty() {
+        return entityIds.length == 0;
+    }
+
+    public int getEntityId(int index) {
+        return entityIds[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * 线段与玩家碰撞箱求交，返回最近命中的玩家
+     *
+     * @param excludedEntityId 不参与检测的实体（射手自身；-1 表示不排除）
+     * @param hitOut 命中时写入命中位置（长度 >= 3）
+     * @return 命中玩家的下标；未命中返回 -1
+     */
+    public int raycast(double startX, double startY, double startZ,
+                       double endX, double endY, double endZ,
+                       int excludedEntityId, double[] hitOut) {
+        if (entityIds.length == 0) {
+            return -1;
+        }
+
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double dz = endZ - startZ;
+        int best = -1;
+        double bestT = Double.MAX_VALUE;
+
+        int minCellX = cell(Math.min(startX, endX));
+        int minCellY = cell(Math.min(startY, endY));
+        int minCellZ = cell(Math.min(startZ, endZ));
+        int maxCellX = cell(Math.max(startX, endX));
+        int maxCellY = cell(Math.max(startY, endY));
+        int maxCellZ = cell(Math.max(startZ, endZ));
+        for (int cx = minCellX; cx <= maxCellX; cx++) {
+            for (int cy = minCellY; cy <= maxCellY; cy++) {
+                for (int cz = minCellZ; cz <= maxCellZ; cz++) {
+                    int[] indices = cells.get(cellKey(cx, cy, cz));
+                    if (indices == null) {
+                        continue;
+                    }
+                    for (int index : indices) {
+                        if (entityIds[index] == excludedEntityId) {
+                            continue;
+                        }
+                        double t = entryTime(index, startX, startY, startZ, dx, dy, dz);
+                        if (t >= 0.0 && t < bestT) {
+                            bestT = t;
+                            best = index;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (best >= 0) {
+            hitOut[0] = startX + dx * bestT;
+            hitOut[1] = startY + dy * bestT;
+            hitOut[2] = startZ + dz * bestT;
+        }
+        return best;
+    }
+
+    /**
+     * 线段进入碰撞箱的参数 t（0..1，slab 法）；起点在箱内或未相交时返回 -1
+     */
+    private double entryTime(int index, double startX, double startY, double startZ,
+                             double dx, double dy, double dz) {
+        double enter = -1.0;
+        double exit = 1.0;
+
+        if (Math.abs(dx) < EPSILON) {
+            if (startX < minX[index] || startX > maxX[index]) {
+                return -1.0;
+            }
+        } else {
+            double t1 = (minX[index] - startX) / dx;
+            double t2 = (maxX[index] - startX) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        if (Math.abs(dy) < EPSILON) {
+            if (startY < minY[index] || startY > maxY[index]) {
+                return -1.0;
+            }
+        } else {
+            double t1 = (minY[index] - startY) / dy;
+            double t2 = (maxY[index] - startY) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        if (Math.abs(dz) < EPSILON) {
+            if (startZ < minZ[index] || startZ > maxZ[index]) {
+                return -1.0;
+            }
+        } else {
+            double t1 = (minZ[index] - startZ) / dz;
+            double t2 = (maxZ[index] - startZ) / dz;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+
+        // enter <= 0：起点已在箱内（或箱在起点后方），不算命中
+        if (enter <= 0.0 || enter > exit) {
+            return -1.0;
+        }
+        return enter;
+    }
+
+    private static int cell(double coordinate) {
+        return MathHelper.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long cellKey(int cx, int cy, int cz) {
+        return ((long) (cx & 0x1FFFFF) << 42) | ((long) (cy & 0x1FFFFF) << 21) | (long) (cz & 0x1FFFFF);
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.playerhighlight;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 弓箭预瞄的预测结果缓存（LRU）
+ *
+ * 键为量化后的瞄准输入（yaw、pitch、拉弓进度、眼睛位置、射手速度）加物理参数版本，
+ * 来回扫视同一片区域时直接取回已有预测（哈希查找，O(1)），不再重新模拟。
+ * 量化步长与 BowPreviewClient 的重算阈值一致，命中的预测与重新模拟的差异不超过原有的“输入变化不大不重算”。
+ *
+ * 每条缓存记录轨迹的包围盒：包围盒内方块变化或区块重新加载时移除该记录。
+ * 命中玩家的预测不缓存（玩家会移动），其余记录超过 ENTRY_TTL_TICKS 后也视为过期。
+ *
+ * 线程安全：查询在客户端线程，写入在预测线程的回调中，全部方法由同一把锁保护。
+ */
+final class PredictionCache {
+
+    private static final int MAX_ENTRIES = 256;  // 每条约一条轨迹（几 KB），总量有上限
+    private static final long ENTRY_TTL_TICKS = 100;
+    private static final double PATH_BOX_MARGIN = 1.0;
+
+    // 量化步长（与 BowPreviewClient 的重算阈值一致）
+    private static final float ANGLE_QUANTUM = 0.25f;
+    private static final float PULL_QUANTUM = 0.01f;
+    private static final double POS_QUANTUM = 0.05;
+    private static final double VEL_QUANTUM = 0.01;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // 以下均受 entries 锁保护
+    private int generation = 0;  // 每次因地形变化移除记录时递增，丢弃变化前提交的模拟结果
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * 构建缓存键
+     *
+     * @param inaccuracySeed 预瞄随机偏移的种子（未启用时为 0）
+     */
+    static Key key(String typeId, int paramsVersion, int maxTicks, double fluidDrag, long inaccuracySeed,
+                   float yaw, float pitch, float pull,
+                   double eyeX, double eyeY, double eyeZ,
+                   double velX, double velY, double velZ, boolean onGround) {
+        return new Key(
+                typeId,
+                paramsVersion,
+                maxTicks,
+                Double.doubleToLongBits(fluidDrag),
+                inaccuracySeed,
+                Math.round(MathHelper.wrapDegrees(yaw) / ANGLE_QUANTUM),
+                Math.round(pitch / ANGLE_QUANTUM),
+                Math.round(pull / PULL_QUANTUM),
+                Math.round(eyeX / POS_QUANTUM),
+                Math.round(eyeY / POS_QUANTUM),
+                Math.round(eyeZ / POS_QUANTUM),
+                Math.round(velX / VEL_QUANTUM),
+                Math.round(velY / VEL_QUANTUM),
+                Math.round(velZ / VEL_QUANTUM),
+                onGround
+        );
+    }
+
+    /**
+     * 查询缓存（未命中或已过期返回 null）
+     */
+    ProjectilePrediction get(Key key, long worldTime) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && worldTime - entry.createdTime > ENTRY_TTL_TICKS) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.prediction;
+        }
+    }
+
+    /**
+     * 当前的失效代数（提交模拟时记录，写入时用于判断期间地形是否变化）
+     */
+    int getGeneration() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * 写入模拟结果；提交后地形发生过变化的结果不写入
+     */
+    void put(Key key, ProjectilePrediction prediction, int submittedGeneration, long worldTime) {
+        if (prediction == null || prediction.hitsEntity() || prediction.getPointCount() == 0) {
+            return;
+        }
+        Entry entry = new Entry(prediction, worldTime);
+        synchronized (entries) {
+            if (submittedGeneration != generation) {
+                return;
+            }
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * 方块变化：移除轨迹包围盒包含该方块的记录
+     */
+    void onBlockChanged(BlockPos pos) {
+        double minX = pos.getX();
+        double minY = pos.getY();
+        double minZ = pos.getZ();
+        evictIntersecting(minX, minY, minZ, minX + 1.0, minY + 1.0, minZ + 1.0);
+    }
+
+    /**
+     * 区块（重新）加载：移除轨迹经过该区块列的记录
+     */
+    void onChunkLoad(int chunkX, int chunkZ) {
+        double minX = chunkX << 4;
+        double minZ = chunkZ << 4;
+        evictIntersecting(minX, Double.NEGATIVE_INFINITY, minZ, minX + 16.0, Double.POSITIVE_INFINITY, minZ + 16.0);
+    }
+
+    void clear() {
+        synchronized (entries) {
+            if (!entries.isEmpty()) {
+                generation++;
+                entries.clear();
+            }
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    int getCapacity() {
+        return MAX_ENTRIES;
+    }
+
+    long getHits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    long getMisses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    long getEvictions() {
+        synchronized (entries) {
+            return evictions;
+        }
+    }
+
+    private void evictIntersecting(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        synchronized (entries) {
+            // 地形变化可能影响正在模拟中的结果，无论是否移除记录都递增代数
+            generation++;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.intersects(minX, minY, minZ, maxX, maxY, maxZ)) {
+                    iterator.remove();
+                    evictions++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 量化后的缓存键
+     */
+    static final class Key {
+        private final String typeId;
+        private final int paramsVersion;
+        private final int maxTicks;
+        private final long fluidDragBits;
+        private final long inaccuracySeed;
+        private final int yaw;
+        private final int pitch;
+        private final int pull;
+        private final long eyeX;
+        private final long eyeY;
+        private final long eyeZ;
+        private final long velX;
+        private final long velY;
+        private final long velZ;
+        private final boolean onGround;
+        private final int hash;
+
+        private Key(String typeId, int paramsVersion, int maxTicks, long fluidDragBits, long inaccuracySeed,
+                    int yaw, int pitch, int pull,
+                    long eyeX, long eyeY, long eyeZ,
+                    long velX, long velY, long velZ, boolean onGround) {
+            this.typeId = typeId;
+            this.paramsVersion = paramsVersion;
+            this.maxTicks = maxTicks;
+            this.fluidDragBits = fluidDragBits;
+            this.inaccuracySeed = inaccuracySeed;
+            this.yaw = yaw;
+            this.pitch = pitch;
+            this.pull = pull;
+            this.eyeX = eyeX;
+            this.eyeY = eyeY;
+            this.eyeZ = eyeZ;
+            this.velX = velX;
+            this.velY = velY;
+            this.velZ = velZ;
+            this.onGround = onGround;
+
+            int h = typeId.hashCode();
+            h = 31 * h + paramsVersion;
+            h = 31 * h + maxTicks;
+            h = 31 * h + Long.hashCode(fluidDragBits);
+            h = 31 * h + Long.hashCode(inaccuracySeed);
+            h = 31 * h + yaw;
+            h = 31 * h + pitch;
+            h = 31 * h + pull;
+            h = 31 * h + Long.hashCode(eyeX);
+            h = 31 * h + Long.hashCode(eyeY);
+            h = 31 * h + Long.hashCode(eyeZ);
+            h = 31 * h + Long.hashCode(velX);
+            h = 31 * h + Long.hashCode(velY);
+            h = 31 * h + Long.hashCode(velZ);
+            h = 31 * h + (onGround ? 1 : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return hash == other.hash
+                    && paramsVersion == other.paramsVersion
+                    && maxTicks == other.maxTicks
+                    && fluidDragBits == other.fluidDragBits
+                    && inaccuracySeed == other.inaccuracySeed
+                    && yaw == other.yaw
+                    && pitch == other.pitch
+                    && pull == other.pull
+                    && eyeX == other.eyeX
+                    && eyeY == other.eyeY
+                    && eyeZ == other.eyeZ
+                    && velX == other.velX
+                    && velY == other.velY
+                    && velZ == other.velZ
+                    && onGround == other.onGround
+                    && typeId.equals(other.typeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final ProjectilePrediction prediction;
+        final long createdTime;
+        final double minX;
+        final double minY;
+        final double minZ;
+        final double maxX;
+        final double maxY;
+        final double maxZ;
+
+        Entry(ProjectilePrediction prediction, long createdTime) {
+            this.prediction = prediction;
+            this.createdTime = createdTime;
+
+            double lowX = Double.POSITIVE_INFINITY;
+            double lowY = Double.POSITIVE_INFINITY;
+            double lowZ = Double.POSITIVE_INFINITY;
+            double highX = Double.NEGATIVE_INFINITY;
+            double highY = Double.NEGATIVE_INFINITY;
+            double highZ = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < prediction.getPointCount(); i++) {
+                lowX = Math.min(lowX, prediction.getPointX(i));
+                lowY = Math.min(lowY, prediction.getPointY(i));
+                lowZ = Math.min(lowZ, prediction.getPointZ(i));
+                highX = Math.max(highX, prediction.getPointX(i));
+                highY = Math.max(highY, prediction.getPointY(i));
+                highZ = Math.max(highZ, prediction.getPointZ(i));
+            }
+            // 轨迹点每 3 tick 保存一次，点间线段可能偏出点的包围盒；外扩补偿（含贴地检测的 0.5 格）
+            this.minX = lowX - PATH_BOX_MARGIN;
+            this.minY = lowY - PATH_BOX_MARGIN;
+            this.minZ = lowZ - PATH_BOX_MARGIN;
+            this.maxX = highX + PATH_BOX_MARGIN;
+            this.maxY = highY + PATH_BOX_MARGIN;
+            this.maxZ = highZ + PATH_BOX_MARGIN;
+        }
+
+        boolean intersects(double otherMinX, double otherMinY, double otherMinZ,
+                           double otherMaxX, double otherMaxY, double otherMaxZ) {
+            return otherMaxX >= minX && otherMinX <= maxX
+                    && otherMaxY >= minY && otherMinY <= maxY
+                    && otherMaxZ >= minZ && otherMinZ <= maxZ;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.playerhighlight;
+
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * 后台轨迹预测线程池
+ *
+ * 客户端 tick 线程只负责捕获不可变的 PredictionJob 并提交，模拟在少量守护线程上执行，
+ * 结果通过回调在工作线程上发布（回调只能做原子发布，不得访问世界/实体）。
+ * tick 线程从不等待模拟完成。
+ *
+ * 所有模拟共享 SimulationBudget 的每 tick 时间预算：单条模拟每次只领取一个切片，
+ * 切片用完仍未结束时保存积分状态（部分完成），放入暂停队列，下一 tick 预算重置后重新提交继续模拟；
+ * 遇到尚未构建的碰撞快照区块段时同样暂停，由客户端线程在下一 tick 开始时构建（见 CollisionSnapshot）。
+ * 结果只在模拟结束后通过回调发布一次；模拟抛出异常或线程池拒绝任务时改为调用失败回调（若有），
+ * 调用方据此放弃该请求，之后可以重新提交。
+ */
+public final class PredictionExecutor {
+    private PredictionExecutor() {
+    }
+
+    private static final int WORKER_COUNT = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final AtomicInteger threadIndex = new AtomicInteger();
+    private static final AtomicInteger pendingJobs = new AtomicInteger();
+
+    // 预算用完或地形未就绪而暂停的模拟，下一 tick 开始时重新提交
+    private static final ConcurrentLinkedQueue<Continuation> parked = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger parkedJobs = new AtomicInteger();
+    private static volatile long resumedSlices = 0;  // 只在客户端线程递增（统计用）
+
+    // 每个工作线程复用自己的轨迹缓冲区
+    private static final ThreadLocal<TrajectoryBuffer> buffers = ThreadLocal.withInitial(TrajectoryBuffer::new);
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(WORKER_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "playerhighlight-prediction-" + threadIndex.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    /**
+     * 注册 tick 事件：每个客户端 tick 开始时重置模拟预算，并继续上一 tick 暂停的模拟
+     */
+    public static void initialize() {
+        ClientTickEvents.START_CLIENT_TICK.register(client -> {
+            SimulationBudget.beginTick();
+            resumeParked();
+        });
+    }
+
+    /**
+     * 提交预测任务
+     *
+     * @param job 不可变的预测输入
+     * @param onComplete 在工作线程上接收结果；模拟异常时不会被调用
+     */
+    public static void submit(PredictionJob job, Consumer<ProjectilePrediction> onComplete) {
+        submit(job, onComplete, null, null);
+    }
+
+    /**
+     * 提交预测任务，并在每次暂停时通知已模拟的 tick 数（部分完成，结果尚未发布）
+     *
+     * @param onPark 在工作线程上接收暂停时已模拟的 tick 数（只能做原子发布）；为 null 时不通知
+     * @param onFailure 模拟异常或任务被拒绝、不会再有结果时调用（工作线程或客户端线程，只能做原子发布）；为 null 时不通知
+     */
+    public static void submit(PredictionJob job, Consumer<ProjectilePrediction> onComplete, IntConsumer onPark,
+                              Runnable onFailure) {
+        pendingJobs.incrementAndGet();
+        execute(new Continuation(job, onComplete, onPark, onFailure));
+    }
+
+    private static void execute(Continuation continuation) {
+        try {
+            executor.execute(() -> runSlice(continuation));
+        } catch (RejectedExecutionException e) {
+            pendingJobs.decrementAndGet();
+            PlayerHighlightClient.LOGGER.warn("Trajectory prediction rejected for {}", continuation.job.typeId, e);
+            notifyFailure(continuation);
+        }
+    }
+
+    /**
+     * 在预算切片内推进一条模拟；结束则发布结果，否则（切片用完或地形未就绪）暂停到下一 tick
+     */
+    private static void runSlice(Continuation continuation) {
+        PredictionJob job = continuation.job;
+        try {
+            long granted = SimulationBudget.claim();
+            if (granted == 0) {
+                park(continuation);
+                return;
+            }
+
+            long start = System.nanoTime();
+            boolean finished;
+            try {
+                if (continuation.progress == null) {
+                    continuation.progress = PhysicsSimulator.begin(job, buffers.get());
+                }
+                finished = PhysicsSimulator.advance(job, continuation.progress, start + granted);
+            } finally {
+                SimulationBudget.settle(granted, System.nanoTime() - start);
+            }
+
+            if (!finished) {
+                if (!continuation.ownsBuffer) {
+                    // 首次暂停：缓冲区连同轨迹点一起交给这条模拟，线程本地换一个新的（不复制轨迹点）
+                    buffers.set(new TrajectoryBuffer());
+                    continuation.ownsBuffer = true;
+                }
+                if (continuation.onPark != null) {
+                    continuation.onPark.accept(continuation.progress.getTicksSimulated());
+                }
+                park(continuation);
+                return;
+            }
+
+            ProjectilePrediction prediction = PhysicsSimulator.finish(job, continuation.progress);
+            continuation.onComplete.accept(prediction);
+        } catch (Throwable t) {
+            PlayerHighlightClient.LOGGER.warn("Trajectory prediction failed for {}", job.typeId, t);
+            notifyFailure(continuation);
+        }
+        pendingJobs.decrementAndGet();
+    }
+
+    private static void notifyFailure(Continuation continuation) {
+        if (continuation.onFailure == null) {
+            return;
+        }
+        try {
+            continuation.onFailure.run();
+        } catch (Throwable t) {
+            PlayerHighlightClient.LOGGER.warn("Trajectory prediction failure callback failed", t);
+        }
+    }
+
+    private static void park(Continuation continuation) {
+        parked.add(continuation);
+        parkedJobs.incrementAndGet();
+    }
+
+    private static void resumeParked() {
+        Continuation continuation;
+        while ((continuation = parked.poll()) != null) {
+            parkedJobs.decrementAndGet();
+            resumedSlices++;
+            execute(continuation);
+        }
+    }
+
+    /**
+     * 尚未完成的任务数（含暂停中的任务）
+     */
+    public static int getPendingJobs() {
+        return pendingJobs.get();
+    }
+
+    /**
+     * 因预算用完或地形未就绪而暂停、等待下一 tick 继续的任务数
+     */
+    public static int getParkedJobs() {
+        return parkedJobs.get();
+    }
+
+    /**
+     * 累计从暂停中恢复的次数
+     */
+    public static long getResumedSlices() {
+        return resumedSlices;
+    }
+
+    /**
+     * 一条模拟的输入、积分状态与回调（首次执行前 progress 为 null）
+     */
+    private static final class Continuation {
+        final PredictionJob job;
+        final Consumer<ProjectilePrediction> onComplete;
+        final IntConsumer onPark;
+        final Runnable onFailure;
+        PhysicsSimulator.Progress progress;
+        boolean ownsBuffer;  // progress 的轨迹缓冲区已不再是某个线程的本地缓冲区
+
+        Continuation(PredictionJob job, Consumer<ProjectilePrediction> onComplete, IntConsumer onPark,
+                     Runnable onFailure) {
+            this.job = job;
+            this.onComplete = onComplete;
+            this.onPark = onPark;
+            this.onFailure = onFailure;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.playerhighlight;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.projectile.ProjectileEntity;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+
+/**
+ * 一次轨迹预测的不可变输入
+ *
+ * 在客户端 tick 线程上捕获：初始位置/速度、DynamicProjectileRegistry 中物理参数的快照、
+ * 相关配置，以及共享的碰撞世界（客户端为 CollisionSnapshot；模拟内核会从中打开自己的只读视图）。
+ * 捕获之后模拟过程不再读取实体、注册表或配置，因此可以直接交给 PredictionExecutor 在后台执行。
+ * {@link #headless} 直接给定物理参数与碰撞世界，不依赖客户端（基准测试、录制布局回放）。
+ */
+public final class PredictionJob {
+    public final double posX;
+    public final double posY;
+    public final double posZ;
+    public final double velX;
+    public final double velY;
+    public final double velZ;
+    public final String typeId;
+    public final double gravity;
+    public final double drag;
+    /** 是否模拟流体阻力（仅箭矢，且配置开启） */
+    public final boolean simulateFluidDrag;
+    public final double fluidDrag;
+    /** 是否允许在空旷区域成段跳过碰撞检测（见 PhysicsSimulator.findClearWindow） */
+    public final boolean coarseStepping;
+    /** 轨迹折线简化容差（格；0 表示按固定间隔保存轨迹点） */
+    public final double simplifyTolerance;
+    public final int maxTicks;
+    public final CollisionWorld.Provider collision;
+    /** 捕获时刻的玩家碰撞箱索引 */
+    public final PlayerSpatialHash players;
+    /** 不参与玩家命中检测的实体（射手；-1 表示不排除） */
+    public final int excludedEntityId;
+
+    private PredictionJob(double posX, double posY, double posZ,
+                          double velX, double velY, double velZ,
+                          String typeId, double gravity, double drag,
+                          boolean simulateFluidDrag, double fluidDrag,
+                          boolean coarseStepping, double simplifyTolerance,
+                          int maxTicks, CollisionWorld.Provider collision,
+                          PlayerSpatialHash players, int excludedEntityId) {
+        this.posX = posX;
+        this.posY = posY;
+        this.posZ = posZ;
+        this.velX = velX;
+        this.velY = velY;
+        this.velZ = velZ;
+        this.typeId = typeId;
+        this.gravity = gravity;
+        this.drag = drag;
+        this.simulateFluidDrag = simulateFluidDrag;
+        this.fluidDrag = fluidDrag;
+        this.coarseStepping = coarseStepping;
+        this.simplifyTolerance = simplifyTolerance;
+        this.maxTicks = maxTicks;
+        this.collision = collision;
+        this.players = players;
+        this.excludedEntityId = excludedEntityId;
+    }
+
+    /**
+     * 直接给定物理参数与碰撞世界创建任务（不读取注册表、配置或客户端世界；不检测玩家命中；启用粗步进，不简化轨迹）
+     *
+     * @param fluidDrag 流体中的阻力；NaN 表示不模拟流体阻力
+     */
+    public static PredictionJob headless(double posX, double posY, double posZ,
+                                         double velX, double velY, double velZ,
+                                         double gravity, double drag, double fluidDrag, int maxTicks,
+                                         CollisionWorld.Provider collision) {
+        return headless(posX, posY, posZ, velX, velY, velZ, gravity, drag, fluidDrag, maxTicks,
+                true, 0.0, collision);
+    }
+
+    /**
+     * 同上，并指定粗步进与轨迹简化（基准测试对比各项优化时使用）
+     *
+     * @param simplifyTolerance 轨迹折线简化容差（格；0 表示按固定间隔保存轨迹点）
+     */
+    public static PredictionJob headless(double posX, double posY, double posZ,
+                                         double velX, double velY, double velZ,
+                                         double gravity, double drag, double fluidDrag, int maxTicks,
+                                         boolean coarseStepping, double simplifyTolerance,
+                                         CollisionWorld.Provider collision) {
+        return new PredictionJob(
+                posX, posY, posZ,
+                velX, velY, velZ,
+                "UNKNOWN",
+                gravity,
+                drag,
+                !Double.isNaN(fluidDrag),
+                Double.isNaN(fluidDrag) ? drag : fluidDrag,
+                coarseStepping,
+                simplifyTolerance,
+                maxTicks,
+                collision,
+                PlayerSpatialHash.EMPTY,
+                -1
+        );
+    }
+
+    /**
+     * 从弹道实体的当前状态捕获任务
+     */
+    public static PredictionJob forEntity(Entity projectile, String typeId, World world, int maxTicks) {
+        Vec3d pos = projectile.getPos();
+        Vec3d velocity = projectile.getVelocity();
+        Entity owner = projectile instanceof ProjectileEntity proj ? proj.getOwner() : null;
+        return capture(
+                pos.x, pos.y, pos.z,
+                velocity.x, velocity.y, velocity.z,
+                typeId,
+                world,
+                maxTicks,
+                projectile.hasNoGravity(),
+                owner
+        );
+    }
+
+    /**
+     * 从给定初始状态捕获任务（必须在客户端线程调用：会读取注册表、配置与玩家位置）
+     *
+     * @param shooter 射手（不参与玩家命中检测；未知时为 null）
+     */
+    public static PredictionJob capture(double posX, double posY, double posZ,
+                                        double velX, double velY, double velZ,
+                                        String typeId, World world, int maxTicks,
+                                        boolean noGravity, Entity shooter) {
+        if (typeId == null || typeId.isEmpty()) {
+            typeId = "UNKNOWN";
+        }
+
+        // 从动态注册表获取物理参数
+        DynamicProjectileRegistry.ProjectileTypeData typeData =
+                DynamicProjectileRegistry.getInstance().getOrCreateType(typeId);
+        double gravity = noGravity ? 0.0 : typeData.getGravity();
+        double drag = typeData.getDrag();
+
+        // 预先构建起始几 tick 的区块段，后台线程不必为此暂停一个 tick
+        CollisionSnapshot snapshot = CollisionSnapshot.forWorld(world);
+        snapshot.prefetch(posX, posY, posZ, velX, velY, velZ);
+
+        ModConfig config = ModConfig.getInstance();
+        boolean arrowLike = BowEnchantmentDetector.TYPE_ARROW.equals(typeId);
+        boolean simulateFluidDrag = arrowLike && config.isSimulateFluidDrag();
+
+        return new PredictionJob(
+                posX, posY, posZ,
+                velX, velY, velZ,
+                typeId,
+                gravity,
+                drag,
+                simulateFluidDrag,
+                config.getArrowWaterDrag(),
+                config.isCoarseSteppingEnabled(),
+                config.getTrajectorySimplifyTolerance(),
+                maxTicks,
+                snapshot,
+                PlayerSpatialHash.forTick(world),
+                shooter != null ? shooter.getId() : -1
+        );
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.playerhighlight;
 
 import net.minecraft.util.math.Vec3d;
+
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * 存储弹道预测结果的数据类
  *
  * 包含预测的落点位置、飞行时间、轨迹点等信息
+ * 轨迹点以 packed double[] 存储，渲染等热路径可通过 getPointX/Y/Z 直接读取，无需装箱
  */
 public class ProjectilePrediction {
     /** 预测的落点位置 */
@@ -15,7 +19,7 @@ public class ProjectilePrediction {
     /** 到达落点的时间（tick数） */
     public final int ticksToLand;
 
-    /** 轨迹路径点列表（用于轨迹线渲染） */
+    /** 轨迹路径点列表（兼容视图：每次 get 都会创建 Vec3d，热路径请使用 getPointX/Y/Z） */
     public final List<Vec3d> trajectoryPoints;
 
     /** 是否碰撞到方块 */
@@ -24,29 +28,148 @@ public class ProjectilePrediction {
     /** 计算耗时（纳秒） */
     public final long calculationTimeNs;
 
+    /** 命中的玩家实体 ID（未命中玩家为 -1；命中时 ticksToLand 即命中 tick） */
+    public final int hitEntityId;
+
+    /** 命中的玩家名称（未命中玩家为 null） */
+    public final String hitEntityName;
+
+    /** 轨迹点（x0,y0,z0,x1,y1,z1,...） */
+    private final double[] packedPoints;
+    private final int[] pointTicks;
+    private final int pointCount;
+
     /**
      * 构造函数
      *
      * @param landingPos 预测落点位置
      * @param ticksToLand 飞行时间（tick）
-     * @param trajectoryPoints 轨迹点列表
+     * @param packedPoints 轨迹点（长度必须为 3 的倍数；构造后不得再修改）
+     * @param pointTicks 每个轨迹点对应的模拟 tick（单调不减，长度 = 点数）
      * @param hitBlock 是否碰撞方块
      * @param calculationTimeNs 计算耗时（纳秒）
      */
     public ProjectilePrediction(Vec3d landingPos, int ticksToLand,
-                                List<Vec3d> trajectoryPoints, boolean hitBlock,
+                                double[] packedPoints, int[] pointTicks, boolean hitBlock,
+                                long calculationTimeNs) {
+        this(landingPos, ticksToLand, packedPoints, pointTicks, hitBlock, -1, null, calculationTimeNs);
+    }
+
+    /**
+     * 构造函数（含玩家命中信息）
+     *
+     * @param hitEntityId 命中的玩家实体 ID（未命中为 -1）
+     * @param hitEntityName 命中的玩家名称（未命中为 null）
+     */
+    public ProjectilePrediction(Vec3d landingPos, int ticksToLand,
+                                double[] packedPoints, int[] pointTicks, boolean hitBlock,
+                                int hitEntityId, String hitEntityName,
                                 long calculationTimeNs) {
         this.landingPos = landingPos;
         this.ticksToLand = ticksToLand;
-        this.trajectoryPoints = trajectoryPoints;
+        this.packedPoints = packedPoints;
+        this.pointTicks = pointTicks;
+        this.pointCount = packedPoints.length / 3;
+        this.trajectoryPoints = new PackedPointList();
         this.hitBlock = hitBlock;
+        this.hitEntityId = hitEntityId;
+        this.hitEntityName = hitEntityName;
         this.calculationTimeNs = calculationTimeNs;
     }
 
+    /**
+     * 是否预测命中玩家
+     */
+    public boolean hitsEntity() {
+        return hitEntityId >= 0;
+    }
+
     /**
      * 获取计算耗时（毫秒）
      */
     public double getCalculationTimeMs() {
         return calculationTimeNs / 1_000_000.0;
     }
+
+    /**
+     * 轨迹点数量
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public double getPointX(int index) {
+        return packedPoints[index * 3];
+    }
+
+    public double getPointY(int index) {
+        return packedPoints[index * 3 + 1];
+    }
+
+    public double getPointZ(int index) {
+        return packedPoints[index * 3 + 2];
+    }
+
+    /**
+     * 轨迹点对应的模拟 tick（从预测初始状态起）
+     */
+    public int getPointTick(int index) {
+        return pointTicks[index];
+    }
+
+    /**
+     * 按 tick 在轨迹点之间线性插值出预测位置（超出范围时取首/末点）
+     *
+     * @param out 写入 x/y/z（长度 >= 3）
+     * @return 是否有可用轨迹点
+     */
+    public boolean samplePositionAtTick(int tick, double[] out) {
+        if (pointCount == 0) {
+            return false;
+        }
+
+        // 找到最后一个 tick <= 目标 tick 的点
+        int lo = 0;
+        int hi = pointCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (pointTicks[mid] <= tick) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        int next = lo + 1;
+        if (next >= pointCount || pointTicks[lo] >= tick) {
+            out[0] = getPointX(lo);
+            out[1] = getPointY(lo);
+            out[2] = getPointZ(lo);
+            return true;
+        }
+
+        double t = (double) (tick - pointTicks[lo]) / (pointTicks[next] - pointTicks[lo]);
+        out[0] = getPointX(lo) + (getPointX(next) - getPointX(lo)) * t;
+        out[1] = getPointY(lo) + (getPointY(next) - getPointY(lo)) * t;
+        out[2] = getPointZ(lo) + (getPointZ(next) - getPointZ(lo)) * t;
+        return true;
+    }
+
+    /**
+     * packed 数组上的只读 List 视图（兼容旧调用方）
+     */
+    private final class PackedPointList extends AbstractList<Vec3d> implements RandomAccess {
+        @Override
+        public Vec3d get(int index) {
+            if (index < 0 || index >= pointCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pointCount);
+            }
+            return new Vec3d(getPointX(index), getPointY(index), getPointZ(index));
+        }
+
+        @Override
+        public int size() {
+            return pointCount;
+        }
+    }
 }
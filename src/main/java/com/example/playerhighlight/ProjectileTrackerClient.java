@@ -1,7 +1,14 @@
 package com.example.playerhighlight;
 
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientEntityEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.projectile.*;
@@ -16,19 +23,146 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * 负责检测、追踪和管理所有弹道实体
  * 复用 PlayerHighlightClient 的事件注册模式
+ *
+ * 弹道的发现由客户端实体加载/卸载事件驱动：只维护存活弹道实体的索引，
+ * 每 tick 的开销与弹道数量成正比，而不是与世界中的实体总数（大型刷怪塔等）成正比。
+ *
+ * 弹道相关的状态都以客户端实体 ID（int）为键，存放在开放寻址的原始类型哈希表中（发光 Mixin 每帧每个实体查询一次），
+ * 只在客户端线程（含渲染）访问；UUID 只保留在 TrackedProjectile 上。实体 ID 只在同一世界内唯一，切换世界时清空。
  */
 public class ProjectileTrackerClient {
 
     // 配置常量
-    private static final int MAX_TRACKED_PROJECTILES = 50;  // 最多追踪50个弹道
     private static final int MAX_SIMULATION_TICKS = 200;  // 最大模拟时间（约10秒）
     private static final int CLEANUP_INTERVAL = 20;  // 清理间隔（1秒）
 
-    // 追踪状态
-    private static final Map<UUID, TrackedProjectile> activeProjectiles = new ConcurrentHashMap<>();
-    private static final Set<UUID> alertedProjectiles = new HashSet<>();
-    private static final Map<UUID, Long> ignoredProjectilesUntil = new ConcurrentHashMap<>();
+    // 追踪状态（实体 ID -> ...）
+    private static final Int2ObjectOpenHashMap<TrackedProjectile> activeProjectiles = new Int2ObjectOpenHashMap<>();
+    private static final IntOpenHashSet alertedProjectiles = new IntOpenHashSet();
+    // 因容量不足被挤出、实体仍在世界中的弹道：保留射手与警报状态，重新追踪时沿用（不重复警报、不按当前姿态重新推断射手）
+    private static final Int2ObjectOpenHashMap<EvictedProjectile> evictedProjectiles = new Int2ObjectOpenHashMap<>();
+    private static final Int2LongOpenHashMap ignoredProjectilesUntil = new Int2LongOpenHashMap();
+    private static final long IGNORE_AFTER_LANDED_MS = 120000;
+    private static final int OUTLINE_COLOR = 0xFFFFFF;  // 追踪弹道的发光轮廓颜色（白色）
     private static int tickCounter = 0;
+    // 按威胁排序的追踪弹道；容量满时挤出最不危险的（容量随实测扫描开销变化）
+    private static final ThreatRanking threatRanking = new ThreatRanking();
+    private static int scanGeneration = 0;  // 每次扫描存活弹道时递增，盖在见到的 TrackedProjectile 上
+
+    // 存活的可追踪弹道实体（由实体加载/卸载事件维护；按加载顺序遍历）
+    private static final Int2ObjectLinkedOpenHashMap<Entity> liveProjectiles = new Int2ObjectLinkedOpenHashMap<>();
+    private static ClientWorld indexedWorld = null;
+
+    // 增量重预测：实际位置与预测位置偏离超过阈值时，从当前实体状态重新模拟
+    private static final double REPREDICT_DIVERGENCE_SQ = 0.5 * 0.5;
+    private static final int REPREDICT_MIN_INTERVAL_TICKS = 3;  // 两次重预测之间至少间隔的 tick
+    private static final double[] predictedPosScratch = new double[3];
+
+    // 连续碰撞检测：玩家按当前速度外推的时间窗口（匀速外推只在短时间内可信）
+    private static final int IMPACT_HORIZON_TICKS = 40;
+    private static final SweptImpact.Result impactScratch = new SweptImpact.Result();
+
+    // 本 tick 收集的预测请求，扫描结束时统一提交
+    private static final List<PendingPrediction> pendingPredictions = new ArrayList<>();
+
+    private static final class PendingPrediction {
+        final TrackedProjectile tracked;
+        final PredictionJob job;
+        final int sequence;
+
+        PendingPrediction(TrackedProjectile tracked, PredictionJob job, int sequence) {
+            this.tracked = tracked;
+            this.job = job;
+            this.sequence = sequence;
+        }
+    }
+
+    // 新弹道的分摊初始化：发现时只做临时预测，完整预测与轨迹记录按威胁顺序在之后几个 tick 内完成（齐射不卡帧）
+    private static final long SETUP_SLICE_NS = 500_000L;  // 每 tick 用于初始化的时间
+    private static final int MIN_SETUPS_PER_TICK = 4;  // 每 tick 至少完成的数量，保证队列前进
+    private static final double SETUP_LAG_SMOOTHING = 0.1;
+    private static final PriorityQueue<DeferredSetup> setupQueue = new PriorityQueue<>(
+            Comparator.comparingDouble((DeferredSetup setup) -> setup.threatKey)
+                    .thenComparingLong(setup -> setup.order));
+    // 实体 ID -> 尚未完成的初始化（队列中不在此表里的条目已失效，出队时跳过）
+    private static final Int2ObjectOpenHashMap<DeferredSetup> pendingSetups = new Int2ObjectOpenHashMap<>();
+    private static long setupOrder = 0;
+    private static long completedSetups = 0;
+    private static double setupLagTicks = 0.0;  // 入队到完成的 tick 数（指数滑动平均）
+    private static int maxSetupLagTicks = 0;
+    private static final TrajectoryBuffer provisionalBuffer = new TrajectoryBuffer();
+
+    // 临时预测用的开阔世界（没有任何碰撞与流体）
+    private static final CollisionWorld OPEN_AIR = new CollisionWorld() {
+        @Override
+        public boolean raycast(double startX, double startY, double startZ,
+                               double endX, double endY, double endZ,
+                               double[] hitOut) {
+            return false;
+        }
+
+        @Override
+        public boolean isInFluid(double x, double y, double z) {
+            return false;
+        }
+
+        @Override
+        public boolean isRegionClear(double minX, double minY, double minZ,
+                                     double maxX, double maxY, double maxZ,
+                                     boolean requireNoFluid) {
+            return true;
+        }
+
+        @Override
+        public boolean isAboveTerrain(double minX, double minZ, double maxX, double maxZ, double minY) {
+            return true;
+        }
+    };
+    private static final CollisionWorld.Provider OPEN_AIR_PROVIDER = () -> OPEN_AIR;
+
+    private static final class EvictedProjectile {
+        final String shooterName;
+        final boolean localPlayerShot;
+        final boolean alerted;
+
+        EvictedProjectile(String shooterName, boolean localPlayerShot, boolean alerted) {
+            this.shooterName = shooterName;
+            this.localPlayerShot = localPlayerShot;
+            this.alerted = alerted;
+        }
+    }
+
+    private static final class DeferredSetup {
+        final TrackedProjectile tracked;
+        final Entity entity;
+        final double threatKey;  // 入队时的威胁键
+        final long order;
+        final int enqueuedTick;
+        // 发现时的状态（校准记录从这里开始）
+        final Vec3d initialPos;
+        final Vec3d initialVel;
+        final long shotWorldTick;
+        // 被挤出后重新追踪：发现时已在飞行途中，不作为新的射击样本记录校准
+        final boolean retracked;
+        // 发现时确定的射手玩家（仅箭需要；落地时弹道已减速，无法再按姿态推断）
+        final UUID shooterUuid;
+        // 等待期间观测到的位置，完成时补进轨迹记录
+        final List<Vec3d> bufferedPositions = new ArrayList<>(4);
+
+        DeferredSetup(TrackedProjectile tracked, Entity entity, double threatKey, long order, int enqueuedTick,
+                      long shotWorldTick, boolean retracked, UUID shooterUuid) {
+            this.tracked = tracked;
+            this.entity = entity;
+            this.threatKey = threatKey;
+            this.order = order;
+            this.enqueuedTick = enqueuedTick;
+            this.initialPos = entity.getPos();
+            this.initialVel = entity.getVelocity();
+            this.shotWorldTick = shotWorldTick;
+            this.retracked = retracked;
+            this.shooterUuid = shooterUuid;
+        }
+    }
 
     // 学习样本过滤：仅满弓样本 + 排除怪物箭 + “箭雨玩家”限流（避免校准被异常样本带偏）
     private static final int ARROW_SPAM_WINDOW_TICKS = 60;  // 3秒
@@ -43,11 +177,11 @@ public class ProjectileTrackerClient {
 
     private static final class ArrowShotEntry {
         final long tick;
-        final UUID projectileUuid;
+        final int projectileId;
 
-        ArrowShotEntry(long tick, UUID projectileUuid) {
+        ArrowShotEntry(long tick, int projectileId) {
             this.tick = tick;
-            this.projectileUuid = projectileUuid;
+            this.projectileId = projectileId;
         }
     }
 
@@ -59,25 +193,11 @@ public class ProjectileTrackerClient {
     private static final long NEARBY_ALERT_COOLDOWN_MS = 3000;
     private static final Map<String, Long> nearbyAlertCooldowns = new ConcurrentHashMap<>();
 
-    // 射手推断：记录每个玩家上次看到的位置和视线方向
-    private static final Map<UUID, PlayerSnapshot> lastPlayerSnapshots = new ConcurrentHashMap<>();
-
-    // 记录玩家快照（用于推断射手）— position 存储眼睛位置
-    private static class PlayerSnapshot {
-        final String name;
-        final int entityId;
-        final Vec3d position;  // 眼睛位置
-        final Vec3d lookDirection;
-        final long timestamp;
-
-        PlayerSnapshot(String name, int entityId, Vec3d eyePosition, Vec3d lookDirection) {
-            this.name = name;
-            this.entityId = entityId;
-            this.position = eyePosition;
-            this.lookDirection = lookDirection;
-            this.timestamp = System.currentTimeMillis();
-        }
-    }
+    // 射手推断：弹道出现时射手的显示姿态约落后这么多 tick（实体位置插值），按此回溯姿态历史
+    private static final int SHOOTER_POSE_LAG_TICKS = 2;
+    private static final double SHOOTER_MAX_DISTANCE = 5.0;
+    private static final double SHOOTER_MAX_ANGLE_COS = Math.cos(Math.toRadians(30.0));
+    private static final double LOCAL_SHOT_MAX_ANGLE_COS = Math.cos(Math.toRadians(15.0));
 
     /**
      * 初始化弹道追踪系统
@@ -85,6 +205,20 @@ public class ProjectileTrackerClient {
     public static void initialize() {
         PlayerHighlightClient.LOGGER.info("Projectile Tracker initializing...");
 
+        ClientEntityEvents.ENTITY_LOAD.register((entity, world) -> {
+            if (world != indexedWorld) {
+                switchWorld(world);
+            }
+            if (isTrackableProjectile(entity)) {
+                liveProjectiles.put(entity.getId(), entity);
+            }
+        });
+        ClientEntityEvents.ENTITY_UNLOAD.register((entity, world) -> {
+            if (world == indexedWorld && liveProjectiles.remove(entity.getId(), entity)) {
+                evictedProjectiles.remove(entity.getId());
+            }
+        });
+
         ClientTickEvents.END_CLIENT_TICK.register(client -> {
             if (client.world == null || client.player == null) {
                 return;
@@ -93,8 +227,14 @@ public class ProjectileTrackerClient {
             // 如果弹道预测功能被关闭，清空追踪列表并跳过
             if (!PlayerHighlightClient.isProjectilePredictionEnabled()) {
                 if (!activeProjectiles.isEmpty()) {
+                    for (TrackedProjectile tracked : activeProjectiles.values()) {
+                        setOutlined(tracked.getEntityId(), false);
+                    }
                     activeProjectiles.clear();
                     alertedProjectiles.clear();
+                    evictedProjectiles.clear();
+                    threatRanking.clear();
+                    clearSetupQueue();
                 }
                 return;
             }
@@ -119,125 +259,406 @@ public class ProjectileTrackerClient {
     private static void updateTrackedProjectiles(MinecraftClient client) {
         pruneIgnored();
 
-        // 更新所有玩家的快照
-        updatePlayerSnapshots(client);
+        if (client.world != indexedWorld) {
+            // 新世界尚未加载任何实体（或索引属于已离开的世界）
+            switchWorld(client.world);
+        }
 
-        // 标记所有当前存在于世界中的弹道
-        Set<UUID> currentProjectiles = new HashSet<>();
+        // 记录所有玩家本 tick 的姿态（射手推断用）
+        PlayerPoseHistory.record(client.world.getPlayers(), tickCounter);
 
-        // 扫描世界中的所有实体
-        for (Entity entity : client.world.getEntities()) {
-            if (isTrackableProjectile(entity)) {
-                UUID id = entity.getUuid();
-                if (isIgnored(id)) {
-                    continue;
-                }
-                currentProjectiles.add(id);
+        // 只遍历存活弹道的索引（由实体加载/卸载事件维护）；见到的弹道盖上本次扫描的代数
+        int generation = ++scanGeneration;
+        long now = System.currentTimeMillis();
+        long scanStart = System.nanoTime();
+        for (Entity entity : liveProjectiles.values()) {
+            int id = entity.getId();
+            if (isIgnored(id)) {
+                continue;
+            }
 
-                if (!activeProjectiles.containsKey(id)) {
-                    // 发现新弹道
-                    if (activeProjectiles.size() < MAX_TRACKED_PROJECTILES) {
-                        trackNewProjectile(client, entity);
-                    }
-                } else {
-                    // 更新已有弹道的最后见到时间
-                    TrackedProjectile tracked = activeProjectiles.get(id);
-                    tracked.updateLastSeen();
+            if (!activeProjectiles.containsKey(id)) {
+                // 发现新弹道（容量已满时只有比最不危险的已追踪弹道更危险才会替换它）
+                TrackedProjectile tracked = tryTrackNewProjectile(client, entity);
+                if (tracked != null) {
+                    tracked.markSeen(generation, now);
+                }
+            } else {
+                // 更新已有弹道的最后见到时间
+                TrackedProjectile tracked = activeProjectiles.get(id);
+                tracked.markSeen(generation, now);
+                // 区块重新加载后同一 ID 是新的实体对象，补上发光标记
+                OutlineTarget outline = (OutlineTarget) entity;
+                if (!outline.playerhighlight$isOutlined()) {
+                    outline.playerhighlight$setOutline(true, OUTLINE_COLOR);
+                }
 
-                    // 记录当前位置（用于校准）
-                    if (!tracked.hasLanded()) {
+                // 记录当前位置（用于校准），并在偏离预测时重新预测
+                if (!tracked.hasLanded()) {
+                    DeferredSetup setup = pendingSetups.get(id);
+                    if (setup != null) {
+                        setup.bufferedPositions.add(entity.getPos());
+                    } else {
                         TrajectoryRecorder.recordPosition(id, entity.getPos());
                     }
+                    repredictIfDiverged(client, entity, tracked);
+                    updateImpact(client.player, entity, tracked);
+                    updateThreat(client.player, tracked);
+                }
+
+                // 首个预测结果到达后发送警报（每个弹道只发送一次）
+                if (!alertedProjectiles.contains(id) && tracked.getPrediction() != null) {
+                    sendAlertMessage(client, tracked);
+                    alertedProjectiles.add(id);
                 }
             }
         }
 
-        // 检查已追踪的弹道是否仍在世界中，如果不在则标记为已击中（仅触发一次）
+        threatRanking.recordScanCost(System.nanoTime() - scanStart, activeProjectiles.size());
+
+        // 按威胁顺序完成一部分新弹道的初始化
+        runDeferredSetups(client);
+
+        // 提交本 tick 收集的预测请求
+        flushPredictionRequests(client);
+
+        // 本次扫描没盖上代数的弹道已不在世界中，标记为已击中（仅触发一次）
         for (TrackedProjectile tracked : activeProjectiles.values()) {
-            if (!currentProjectiles.contains(tracked.getUuid()) && !tracked.hasLanded()) {
-                markProjectileAsLanded(tracked.getUuid(), null);
+            if (!tracked.hasLanded() && !tracked.wasSeenIn(generation)) {
+                markLanded(tracked, null);
             }
         }
     }
 
     /**
-     * 更新所有玩家的位置快照
+     * 按威胁决定是否追踪新弹道：容量未满直接追踪；已满时挤出最不危险的已追踪弹道，或放弃新弹道
+     *
+     * 尚无预测的新弹道按直线外推与本地玩家的最近距离估计威胁。
+     *
+     * @return 新建的追踪记录；未追踪时为 null
      */
-    private static void updatePlayerSnapshots(MinecraftClient client) {
-        if (client.world == null) return;
+    private static TrackedProjectile tryTrackNewProjectile(MinecraftClient client, Entity projectile) {
+        EvictedProjectile evicted = evictedProjectiles.get(projectile.getId());
+        boolean localPlayerShot = evicted != null ? evicted.localPlayerShot : isLocalPlayerShot(client, projectile);
+        PlayerEntity player = client.player;
+        Vec3d velocity = projectile.getVelocity();
+        double missDistance = ThreatRanking.rayMissDistance(
+                projectile.getX(), projectile.getY(), projectile.getZ(),
+                velocity.x, velocity.y, velocity.z,
+                player.getX(), player.getY() + player.getHeight() * 0.5, player.getZ(),
+                IMPACT_HORIZON_TICKS
+        );
+        double threatKey = ThreatRanking.threatKey(-1.0, missDistance, localPlayerShot, false);
 
-        for (PlayerEntity player : client.world.getPlayers()) {
-            Vec3d lookDir = player.getRotationVec(1.0f);
-            Vec3d eyePos = player.getPos().add(0, player.getStandingEyeHeight(), 0);
-            PlayerSnapshot snapshot = new PlayerSnapshot(
-                    player.getName().getString(),
-                    player.getId(),
-                    eyePos,
-                    lookDir
-            );
-            lastPlayerSnapshots.put(player.getUuid(), snapshot);
+        if (threatRanking.isFull()) {
+            TrackedProjectile leastThreatening = threatRanking.evictionCandidateFor(threatKey);
+            if (leastThreatening == null) {
+                return null;
+            }
+            evict(leastThreatening);
         }
 
-        // 清理超过5秒的旧快照
-        long currentTime = System.currentTimeMillis();
-        lastPlayerSnapshots.entrySet().removeIf(entry ->
-                (currentTime - entry.getValue().timestamp) > 5000
-        );
+        // 重新追踪被挤出的弹道：沿用发现时的射手，已警报过的不再警报
+        String shooterName = evicted != null ? evicted.shooterName : getShooterName(projectile);
+        TrackedProjectile tracked = trackNewProjectile(projectile, localPlayerShot, shooterName);
+        threatRanking.add(tracked, threatKey);
+        if (evicted != null) {
+            evictedProjectiles.remove(projectile.getId());
+            if (evicted.alerted) {
+                alertedProjectiles.add(projectile.getId());
+            }
+        }
+
+        // 校准过滤需要的射手在发现时确定（初始化可能延后到落地，届时速度过低，姿态推断会失败）
+        UUID shooterUuid = null;
+        if (evicted == null && BowEnchantmentDetector.TYPE_ARROW.equals(tracked.getTypeId())) {
+            PlayerEntity shooter = getOwnerPlayer(projectile);
+            shooterUuid = shooter != null ? shooter.getUuid() : null;
+        }
+        DeferredSetup setup = new DeferredSetup(tracked, projectile, threatKey, setupOrder++, tickCounter,
+                client.world.getTime(), evicted != null, shooterUuid);
+        pendingSetups.put(tracked.getEntityId(), setup);
+        setupQueue.add(setup);
+        return tracked;
     }
 
     /**
-     * 开始追踪新弹道
+     * 开始追踪新弹道：只做发现时必须完成的轻量工作（类型、临时预测），
+     * 完整预测与轨迹记录由 runDeferredSetups 之后完成
+     *
+     * @param shooterName 射手名称（调用方在发现时获取：弹道刚创建时 owner 最有可能有效）
+     * @return 新建的追踪记录
      */
-    private static void trackNewProjectile(MinecraftClient client, Entity projectile) {
-        // 立即获取射手名称（在弹道刚创建时owner最有可能有效）
-        String shooterName = getShooterName(projectile);
-        boolean localPlayerShot = isLocalPlayerShot(client, projectile);
-
+    private static TrackedProjectile trackNewProjectile(Entity projectile, boolean localPlayerShot, String shooterName) {
         // 检测弹道类型（使用新的动态系统）
         String typeId = detectProjectileType(projectile);
 
-        // 开始记录实际轨迹（用于校准）：按规则过滤样本
-        if (shouldStartCalibrationRecording(client, projectile, typeId)) {
-            TrajectoryRecorder.startRecording(
+        // 创建追踪记录（缓存射手名称和类型）
+        TrackedProjectile tracked = new TrackedProjectile(
                 projectile.getUuid(),
+                projectile.getId(),
+                getProjectileName(projectile),
+                shooterName,
                 typeId,
-                projectile.getPos(),
-                projectile.getVelocity(),
                 localPlayerShot
+        );
+
+        activeProjectiles.put(projectile.getId(), tracked);
+        ((OutlineTarget) projectile).playerhighlight$setOutline(true, OUTLINE_COLOR);
+
+        // 临时预测：短时间、无地形，只供完整预测到达前的碰撞检测与威胁排序使用
+        tracked.setProvisionalPrediction(predictProvisional(projectile, typeId), tickCounter);
+        return tracked;
+    }
+
+    /**
+     * 在开阔世界中模拟 IMPACT_HORIZON_TICKS 个 tick（不查询地形，耗时为微秒级）
+     */
+    private static ProjectilePrediction predictProvisional(Entity projectile, String typeId) {
+        DynamicProjectileRegistry.ProjectileTypeData typeData =
+                DynamicProjectileRegistry.getInstance().getOrCreateType(typeId);
+        Vec3d pos = projectile.getPos();
+        Vec3d velocity = projectile.getVelocity();
+        PredictionJob job = PredictionJob.headless(
+                pos.x, pos.y, pos.z,
+                velocity.x, velocity.y, velocity.z,
+                projectile.hasNoGravity() ? 0.0 : typeData.getGravity(),
+                typeData.getDrag(),
+                Double.NaN,
+                IMPACT_HORIZON_TICKS,
+                OPEN_AIR_PROVIDER
+        );
+        return PhysicsSimulator.simulate(job, provisionalBuffer);
+    }
+
+    /**
+     * 协作式调度：按威胁顺序（入队时的威胁键）完成新弹道的初始化，
+     * 每 tick 用时不超过 SETUP_SLICE_NS，但至少完成 MIN_SETUPS_PER_TICK 个
+     */
+    private static void runDeferredSetups(MinecraftClient client) {
+        long start = System.nanoTime();
+        int completed = 0;
+        while (!setupQueue.isEmpty()) {
+            if (completed >= MIN_SETUPS_PER_TICK && System.nanoTime() - start > SETUP_SLICE_NS) {
+                break;
+            }
+            DeferredSetup setup = setupQueue.poll();
+            if (pendingSetups.get(setup.tracked.getEntityId()) != setup) {
+                continue;  // 已被挤出、清理或提前完成
+            }
+            completeSetup(client, setup, true);
+            completed++;
+        }
+    }
+
+    /**
+     * 完成一个新弹道的初始化：按规则开始校准记录（补上等待期间的位置），并提交完整预测
+     *
+     * @param predict 是否提交完整预测（落地时提前完成初始化则不需要）
+     */
+    private static void completeSetup(MinecraftClient client, DeferredSetup setup, boolean predict) {
+        TrackedProjectile tracked = setup.tracked;
+        int id = tracked.getEntityId();
+        pendingSetups.remove(id);
+
+        // 开始记录实际轨迹（用于校准）：按规则过滤样本（使用发现时的状态）
+        if (!setup.retracked && shouldStartCalibrationRecording(client, setup.entity, tracked.getTypeId(),
+                setup.shooterUuid, setup.initialVel, setup.shotWorldTick)) {
+            TrajectoryRecorder.startRecording(
+                id,
+                tracked.getTypeId(),
+                setup.initialPos,
+                setup.initialVel,
+                tracked.isLocalPlayerShot()
             );
+            for (Vec3d position : setup.bufferedPositions) {
+                TrajectoryRecorder.recordPosition(id, position);
+            }
         }
 
-        // 计算轨迹预测
-        ProjectilePrediction prediction = PhysicsSimulator.predictTrajectory(
-                projectile,
-                typeId,
-                client.world,
-                MAX_SIMULATION_TICKS
-        );
+        // 提交轨迹预测（后台计算；警报在结果到达后发送）
+        if (predict) {
+            requestPrediction(client, setup.entity, tracked);
+        }
 
-        // 检查落点是否靠近玩家
+        int lag = tickCounter - setup.enqueuedTick;
+        setupLagTicks += (lag - setupLagTicks) * SETUP_LAG_SMOOTHING;
+        maxSetupLagTicks = Math.max(maxSetupLagTicks, lag);
+        completedSetups++;
+    }
+
+    private static void clearSetupQueue() {
+        setupQueue.clear();
+        pendingSetups.clear();
+    }
+
+    /**
+     * 从实体当前状态捕获预测任务，在本 tick 结束扫描时统一提交（见 flushPredictionRequests）
+     */
+    private static void requestPrediction(MinecraftClient client, Entity projectile, TrackedProjectile tracked) {
+        PredictionJob job = PredictionJob.forEntity(projectile, tracked.getTypeId(), client.world, MAX_SIMULATION_TICKS);
+        pendingPredictions.add(new PendingPrediction(tracked, job, tracked.nextPredictionSequence()));
+    }
+
+    /**
+     * 将本 tick 的预测请求逐个提交到后台线程池（齐射中的各条预测分散到所有工作线程上并行执行）。
+     * 结果原子发布到各自的 TrackedProjectile；模拟暂停时同样记录到 TrackedProjectile（部分完成），
+     * 模拟失败或被拒绝时放弃该请求，使追踪器之后可以重新提交。
+     */
+    private static void flushPredictionRequests(MinecraftClient client) {
+        if (pendingPredictions.isEmpty()) {
+            return;
+        }
+
+        int startTick = tickCounter;
         Vec3d playerPos = client.player.getPos();
-        double distanceToLanding = prediction.landingPos.distanceTo(playerPos);
+        int playerId = client.player.getId();
         double alertRange = ModConfig.getInstance().getNearbyWarningRange();
-        boolean inRange = distanceToLanding <= alertRange;
 
-        // 创建追踪记录（缓存射手名称和类型）
-        TrackedProjectile tracked = new TrackedProjectile(
-                projectile.getUuid(),
-                getProjectileName(projectile),
-                shooterName,
-                typeId,
+        for (int i = 0; i < pendingPredictions.size(); i++) {
+            PendingPrediction request = pendingPredictions.get(i);
+            PredictionExecutor.submit(request.job,
+                    prediction -> request.tracked.publishPrediction(
+                            request.sequence,
+                            prediction,
+                            startTick,
+                            isThreatTo(prediction, playerPos, playerId, alertRange)
+                    ),
+                    ticksSimulated -> request.tracked.markPredictionParked(request.sequence, ticksSimulated),
+                    () -> request.tracked.abandonPrediction(request.sequence));
+        }
+        pendingPredictions.clear();
+    }
+
+    /**
+     * 增量重预测：将实体当前位置与预测轨迹在同一时刻的位置比较，
+     * 仅在偏差超过阈值时才从实体当前位置/速度重新模拟剩余轨迹（服务器修正、击退、卡顿等情况）。
+     * 偏差很小时沿用已有预测，不再每 tick 重算。
+     */
+    private static void repredictIfDiverged(MinecraftClient client, Entity entity, TrackedProjectile tracked) {
+        // 上一次请求的结果尚未返回时不重复提交
+        if (tracked.hasPendingPrediction()) {
+            return;
+        }
+
+        ProjectilePrediction prediction = tracked.getPrediction();
+        if (prediction == null) {
+            // 之前的请求都已放弃（模拟失败），还没有任何预测：重新请求
+            requestPrediction(client, entity, tracked);
+            return;
+        }
+
+        int age = tickCounter - tracked.getPredictionStartTick();
+        if (age < REPREDICT_MIN_INTERVAL_TICKS) {
+            return;
+        }
+
+        if (!prediction.samplePositionAtTick(age, predictedPosScratch)) {
+            return;
+        }
+
+        Vec3d pos = entity.getPos();
+        double dx = pos.x - predictedPosScratch[0];
+        double dy = pos.y - predictedPosScratch[1];
+        double dz = pos.z - predictedPosScratch[2];
+        if (dx * dx + dy * dy + dz * dz <= REPREDICT_DIVERGENCE_SQ) {
+            return;
+        }
+
+        requestPrediction(client, entity, tracked);
+    }
+
+    /**
+     * 连续碰撞检测：沿预测轨迹（从当前时刻起）与按当前速度外推的本地玩家碰撞箱求命中时间与最近距离
+     */
+    private static void updateImpact(PlayerEntity player, Entity entity, TrackedProjectile tracked) {
+        ProjectilePrediction prediction = tracked.getPrediction();
+        int startTick = tracked.getPredictionStartTick();
+        if (prediction == null) {
+            // 完整预测到达之前使用临时预测
+            prediction = tracked.getProvisionalPrediction();
+            startTick = tracked.getProvisionalStartTick();
+            if (prediction == null) {
+                return;
+            }
+        }
+        // 自己射出的弹道起点就在自己的碰撞箱附近，不参与检测
+        if (entity instanceof ProjectileEntity projectile && projectile.getOwner() == player) {
+            return;
+        }
+        Vec3d pos = player.getPos();
+        Vec3d velocity = player.getVelocity();
+        // 站在地面上时竖直速度只是重力残留，不外推
+        double velY = player.isOnGround() ? 0.0 : velocity.y;
+        SweptImpact.compute(
                 prediction,
-                inRange
+                tickCounter - startTick,
+                pos.x, pos.y, pos.z,
+                velocity.x, velY, velocity.z,
+                player.getWidth() * 0.5,
+                player.getHeight(),
+                IMPACT_HORIZON_TICKS,
+                impactScratch
         );
+        tracked.updateImpact(impactScratch);
+    }
 
-        activeProjectiles.put(projectile.getUuid(), tracked);
-
-        // 发送警报消息（每个弹道只发送一次）
-        if (!alertedProjectiles.contains(projectile.getUuid())) {
-            sendAlertMessage(client, tracked);
-            alertedProjectiles.add(projectile.getUuid());
+    /**
+     * 按最新的碰撞检测与预测结果更新弹道的威胁排序
+     * （完整预测到达前只用临时预测的碰撞检测结果；两者都没有时保留发现时的估计）
+     */
+    private static void updateThreat(PlayerEntity player, TrackedProjectile tracked) {
+        ProjectilePrediction prediction = tracked.getPrediction();
+        if (prediction == null && tracked.getProvisionalPrediction() == null) {
+            return;
         }
+        double ticksToImpact = tracked.getTimeToImpact();
+        double missDistance = tracked.getClosestApproach();
+        if (prediction != null) {
+            if (ticksToImpact < 0.0 && prediction.hitEntityId == player.getId()) {
+                int age = tickCounter - tracked.getPredictionStartTick();
+                ticksToImpact = Math.max(0, prediction.ticksToLand - age);
+            }
+            if (prediction.landingPos != null) {
+                missDistance = Math.min(missDistance, prediction.landingPos.distanceTo(player.getPos()));
+            }
+        }
+        threatRanking.update(tracked, ThreatRanking.threatKey(
+                ticksToImpact, missDistance, tracked.isLocalPlayerShot(), tracked.hasLanded()));
+    }
+
+    /**
+     * 因容量不足停止追踪弹道（实体仍在世界中；之后若威胁变高会被重新追踪，沿用这里保留的射手与警报状态）
+     */
+    private static void evict(TrackedProjectile tracked) {
+        evictedProjectiles.put(tracked.getEntityId(), new EvictedProjectile(
+                tracked.getShooterName(),
+                tracked.isLocalPlayerShot(),
+                alertedProjectiles.contains(tracked.getEntityId())
+        ));
+        setOutlined(tracked.getEntityId(), false);
+        pendingSetups.remove(tracked.getEntityId());
+        activeProjectiles.remove(tracked.getEntityId());
+        alertedProjectiles.remove(tracked.getEntityId());
+        threatRanking.remove(tracked);
+        threatRanking.recordEviction();
+        TrajectoryRecorder.discardRecording(tracked.getEntityId());
+    }
+
+    /**
+     * 弹道是否威胁本地玩家：预测落点/命中判断之外，还包括正朝玩家外推位置飞来的弹道
+     */
+    static boolean isThreatTo(TrackedProjectile tracked, ProjectilePrediction prediction,
+                              Vec3d playerPos, int playerId, double alertRange) {
+        return tracked.isOnCollisionCourse() || isThreatTo(prediction, playerPos, playerId, alertRange);
+    }
+
+    /**
+     * 预测是否威胁本地玩家：预测命中本地玩家，或落点在警告范围内
+     */
+    static boolean isThreatTo(ProjectilePrediction prediction, Vec3d playerPos, int playerId, double alertRange) {
+        return prediction.hitEntityId == playerId
+                || prediction.landingPos.distanceTo(playerPos) <= alertRange;
     }
 
     /**
@@ -249,16 +670,22 @@ public class ProjectileTrackerClient {
     private static void sendAlertMessage(MinecraftClient client, TrackedProjectile tracked) {
         String projectileTypeKey = tracked.getType();
         String shooterName = tracked.getShooterName();
-        Vec3d landing = tracked.getPrediction().landingPos;
+        ProjectilePrediction prediction = tracked.getPrediction();
+        Vec3d landing = prediction.landingPos;
         double alertRange = ModConfig.getInstance().getNearbyWarningRange();
-        boolean isNear = landing.distanceTo(client.player.getPos()) <= alertRange;
+        boolean isNear = isThreatTo(tracked, prediction, client.player.getPos(), client.player.getId(), alertRange);
 
         String coordStr = String.format("(%.1f, %.1f, %.1f)", landing.x, landing.y, landing.z);
 
         if (!isNear) {
             // 非危险弹道：actionbar 显示（自动覆盖上一条）
-            Text actionbarMsg = Text.translatable("playerhighlight.alert.actionbar",
+            net.minecraft.text.MutableText actionbarMsg = Text.translatable("playerhighlight.alert.actionbar",
                     Text.translatable(projectileTypeKey), shooterName, coordStr);
+            if (prediction.hitsEntity()) {
+                actionbarMsg.append(Text.translatable("playerhighlight.alert.hit_player",
+                        prediction.hitEntityName, String.valueOf(prediction.ticksToLand)));
+            }
+            appendTimeToImpact(actionbarMsg, tracked);
             client.player.sendMessage(actionbarMsg, true);
             return;
         }
@@ -278,26 +705,58 @@ public class ProjectileTrackerClient {
         message = ((net.minecraft.text.MutableText) message)
                 .append(Text.translatable("playerhighlight.alert.nearby_warning")
                         .styled(style -> style.withColor(0xFF5555)));
+        if (prediction.hitsEntity()) {
+            message = ((net.minecraft.text.MutableText) message)
+                    .append(Text.translatable("playerhighlight.alert.hit_player",
+                            prediction.hitEntityName, String.valueOf(prediction.ticksToLand))
+                            .styled(style -> style.withColor(0xFF5555)));
+        }
+        appendTimeToImpact((net.minecraft.text.MutableText) message, tracked);
 
         client.player.sendMessage(message, false);
     }
 
+    /**
+     * 正朝本地玩家飞来时，在警报后追加预计命中时间（秒）
+     */
+    private static void appendTimeToImpact(net.minecraft.text.MutableText message, TrackedProjectile tracked) {
+        if (!tracked.isOnCollisionCourse()) {
+            return;
+        }
+        message.append(Text.translatable("playerhighlight.alert.time_to_impact",
+                        String.format("%.1f", tracked.getTimeToImpact() / 20.0))
+                .styled(style -> style.withColor(0xFF5555)));
+    }
+
     /**
      * 清理过期的弹道记录
      */
     private static void cleanupDeadProjectiles(MinecraftClient client) {
         long currentTime = System.currentTimeMillis();
-        activeProjectiles.entrySet().removeIf(entry -> {
-            boolean shouldRemove = entry.getValue().isExpired(currentTime);
+        activeProjectiles.values().removeIf(tracked -> {
+            boolean shouldRemove = tracked.isExpired(currentTime);
             if (shouldRemove) {
-                alertedProjectiles.remove(entry.getKey());
+                setOutlined(tracked.getEntityId(), false);
+                pendingSetups.remove(tracked.getEntityId());
+                alertedProjectiles.remove(tracked.getEntityId());
+                threatRanking.remove(tracked);
             }
             return shouldRemove;
         });
 
+        // 实测开销上升导致容量下降时，挤出最不危险的弹道
+        while (threatRanking.isOverCapacity()) {
+            evict(threatRanking.leastThreatening());
+        }
+        // 卸载事件丢失时的兜底：实体已不在世界中的挤出记录
+        evictedProjectiles.keySet().removeIf(id -> !liveProjectiles.containsKey(id));
+
         // 清理轨迹记录器
         TrajectoryRecorder.cleanup();
 
+        // 清理已离开玩家的姿态历史
+        PlayerPoseHistory.prune(tickCounter);
+
         // 处理本地玩家射击的“重复实体/无形墙”情况：延迟选择更可靠的那一个样本进入学习
         CalibrationSystem.flushPendingLocalShots();
 
@@ -314,8 +773,12 @@ public class ProjectileTrackerClient {
      *   <li>怪物箭不记录（仅记录 owner 为玩家的箭）</li>
      *   <li>若玩家 3 秒内射出 >= 5 支箭，屏蔽该玩家 10 分钟（并丢弃窗口内记录，避免污染）</li>
      * </ol>
+     *
+     * @param shooterUuid 发现弹道时确定的射手玩家（非玩家或无法确定时为 null）
      */
-    private static boolean shouldStartCalibrationRecording(MinecraftClient client, Entity projectile, String typeId) {
+    private static boolean shouldStartCalibrationRecording(MinecraftClient client, Entity projectile, String typeId,
+                                                           UUID shooterUuid, Vec3d initialVelocity,
+                                                           long shotWorldTick) {
         if (client == null || client.world == null || projectile == null) {
             return false;
         }
@@ -327,25 +790,23 @@ public class ProjectileTrackerClient {
         }
 
         // 只记录玩家射出的箭（怪物箭/未知 owner 直接跳过）
-        PlayerEntity shooter = getOwnerPlayer(projectile);
-        if (shooter == null) {
+        if (shooterUuid == null) {
             return false;
         }
 
-        long nowTick = client.world.getTime();
-        UUID shooterUuid = shooter.getUuid();
+        long nowTick = shotWorldTick;
 
         if (isArrowLearningSuppressed(shooterUuid, nowTick)) {
             return false;
         }
 
         // 箭雨限流：如果该玩家短时间内连续射出过多箭，视为异常并屏蔽（满弓/非满弓都会触发）
-        if (registerArrowShotAndMaybeSuppress(shooterUuid, projectile.getUuid(), nowTick)) {
+        if (registerArrowShotAndMaybeSuppress(shooterUuid, projectile.getId(), nowTick)) {
             return false;
         }
 
         // 只记录满弓样本：优先使用 critical 标记；若服务器/同步导致 critical 未及时生效，则用初速近似判断
-        if (!isFullyDrawnBowArrow(projectile)) {
+        if (!isFullyDrawnBowArrow(projectile, initialVelocity)) {
             return false;
         }
 
@@ -377,44 +838,23 @@ public class ProjectileTrackerClient {
             return null;
         }
 
-        Vec3d projectilePos = projectile.getPos();
-        Vec3d rawVelocity = projectile.getVelocity();
-        if (rawVelocity.lengthSquared() < 1.0e-9) {
+        PlayerPoseHistory shooter = inferShooterPose(projectile);
+        if (shooter == null) {
             return null;
         }
-        Vec3d projectileDir = rawVelocity.normalize();
-
-        PlayerEntity bestPlayer = null;
-        double bestScore = Double.MAX_VALUE;
-
-        for (PlayerEntity player : client.world.getPlayers()) {
-            Vec3d eyePos = player.getPos().add(0, player.getStandingEyeHeight(), 0);
-            double distance = eyePos.distanceTo(projectilePos);
-            if (distance > 5.0) continue;
-
-            Vec3d lookDir = player.getRotationVec(1.0f);
-            double dot = lookDir.dotProduct(projectileDir);
-            double angle = Math.acos(Math.max(-1.0, Math.min(1.0, dot)));
-            if (angle > Math.toRadians(30.0)) continue;
-
-            double score = distance * 0.5 + angle * 3.0;
-            if (score < bestScore) {
-                bestScore = score;
-                bestPlayer = player;
-            }
-        }
-
-        return bestScore <= 3.0 ? bestPlayer : null;
+        return client.world.getEntityById(shooter.getEntityId()) instanceof PlayerEntity player ? player : null;
     }
 
-    private static boolean isFullyDrawnBowArrow(Entity projectile) {
+    /**
+     * @param initialVelocity 发现弹道时的速度（初始化可能延后几个 tick，此时实体速度已被阻力衰减）
+     */
+    private static boolean isFullyDrawnBowArrow(Entity projectile, Vec3d initialVelocity) {
         if (projectile instanceof PersistentProjectileEntity persistent) {
             if (persistent.isCritical()) {
                 return true;
             }
 
-            Vec3d velocity = persistent.getVelocity();
-            return velocity != null && velocity.lengthSquared() >= FULLY_DRAWN_ARROW_SPEED_SQ;
+            return initialVelocity != null && initialVelocity.lengthSquared() >= FULLY_DRAWN_ARROW_SPEED_SQ;
         }
         return false;
     }
@@ -453,11 +893,11 @@ public class ProjectileTrackerClient {
      *
      * @return 是否应屏蔽（当前箭也应当跳过记录）
      */
-    private static boolean registerArrowShotAndMaybeSuppress(UUID shooterUuid, UUID projectileUuid, long nowTick) {
+    private static boolean registerArrowShotAndMaybeSuppress(UUID shooterUuid, int projectileId, long nowTick) {
         ArrowSpamWindow window = arrowSpamWindows.computeIfAbsent(shooterUuid, k -> new ArrowSpamWindow());
         pruneArrowSpamWindow(window, nowTick);
 
-        window.entries.addLast(new ArrowShotEntry(nowTick, projectileUuid));
+        window.entries.addLast(new ArrowShotEntry(nowTick, projectileId));
         if (window.entries.size() < ARROW_SPAM_THRESHOLD) {
             return false;
         }
@@ -465,7 +905,7 @@ public class ProjectileTrackerClient {
         // 触发屏蔽：把窗口内所有记录丢弃，避免污染学习
         arrowLearningSuppressedUntilTick.put(shooterUuid, nowTick + ARROW_SUPPRESS_TICKS);
         for (ArrowShotEntry entry : window.entries) {
-            TrajectoryRecorder.discardRecording(entry.projectileUuid);
+            TrajectoryRecorder.discardRecording(entry.projectileId);
         }
         window.entries.clear();
         return true;
@@ -485,46 +925,130 @@ public class ProjectileTrackerClient {
         }
     }
 
-    private static boolean isIgnored(UUID uuid) {
-        Long until = ignoredProjectilesUntil.get(uuid);
-        if (until == null) {
+    private static boolean isIgnored(int entityId) {
+        if (!ignoredProjectilesUntil.containsKey(entityId)) {
             return false;
         }
-        if (System.currentTimeMillis() >= until) {
-            ignoredProjectilesUntil.remove(uuid);
+        if (System.currentTimeMillis() >= ignoredProjectilesUntil.get(entityId)) {
+            ignoredProjectilesUntil.remove(entityId);
             return false;
         }
         return true;
     }
 
     private static void pruneIgnored() {
+        if (ignoredProjectilesUntil.isEmpty()) {
+            return;
+        }
         long now = System.currentTimeMillis();
-        ignoredProjectilesUntil.entrySet().removeIf(e -> now >= e.getValue());
+        LongIterator iterator = ignoredProjectilesUntil.values().iterator();
+        while (iterator.hasNext()) {
+            if (now >= iterator.nextLong()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 切换到新世界：实体 ID 只在同一世界内唯一，旧世界的追踪状态全部丢弃
+     */
+    private static void switchWorld(ClientWorld world) {
+        liveProjectiles.clear();
+        activeProjectiles.clear();
+        alertedProjectiles.clear();
+        evictedProjectiles.clear();
+        threatRanking.clear();
+        clearSetupQueue();
+        ignoredProjectilesUntil.clear();
+        PlayerPoseHistory.clear();
+        indexedWorld = world;
     }
 
     /**
      * 标记弹道已落地/已结束，并进入“忽略列表”防止服务器 bug 导致的反复弹跳被重复追踪。
      *
-     * @param uuid 弹道 UUID
+     * @param entityId 弹道的客户端实体 ID
      * @param landingPos 可选：实际碰撞点；为 null 时 TrajectoryRecorder 会使用最后记录点
      */
-    public static void markProjectileAsLanded(UUID uuid, Vec3d landingPos) {
-        TrackedProjectile tracked = activeProjectiles.get(uuid);
-        if (tracked != null && !tracked.hasLanded()) {
+    public static void markProjectileAsLanded(int entityId, Vec3d landingPos) {
+        TrackedProjectile tracked = activeProjectiles.get(entityId);
+        if (tracked != null) {
+            markLanded(tracked, landingPos);
+        } else {
+            ignoredProjectilesUntil.put(entityId, System.currentTimeMillis() + IGNORE_AFTER_LANDED_MS);
+        }
+    }
+
+    private static void markLanded(TrackedProjectile tracked, Vec3d landingPos) {
+        // 初始化尚未轮到就已落地：立即完成校准记录部分，落地样本照常进入学习
+        DeferredSetup setup = pendingSetups.get(tracked.getEntityId());
+        if (setup != null) {
+            completeSetup(MinecraftClient.getInstance(), setup, false);
+        }
+
+        if (!tracked.hasLanded()) {
             tracked.markAsLanded();
-            TrajectoryRecorder.markLanded(uuid, landingPos);
+            threatRanking.demoteLanded(tracked);
+            TrajectoryRecorder.markLanded(tracked.getEntityId(), landingPos);
         }
 
         // 忽略一段时间：避免“落地后不停弹跳”的箭被清理后再次当作新弹道追踪
-        ignoredProjectilesUntil.put(uuid, System.currentTimeMillis() + 120000);
+        ignoredProjectilesUntil.put(tracked.getEntityId(), System.currentTimeMillis() + IGNORE_AFTER_LANDED_MS);
+    }
+
+    /**
+     * 设置弹道实体的发光轮廓（实体已卸载时无需处理）
+     * 追踪期间一直发光，击中后继续显示3秒直到清理
+     */
+    private static void setOutlined(int entityId, boolean outlined) {
+        Entity entity = liveProjectiles.get(entityId);
+        if (entity != null) {
+            ((OutlineTarget) entity).playerhighlight$setOutline(outlined, OUTLINE_COLOR);
+        }
+    }
+
+    /**
+     * 当前追踪容量（随实测扫描开销变化）
+     */
+    public static int getTrackingCapacity() {
+        return threatRanking.getCapacity();
+    }
+
+    public static int getTrackedCount() {
+        return activeProjectiles.size();
     }
 
     /**
-     * 检查弹道是否被追踪（供 Mixin 使用）
-     * 击中后继续显示3秒直到清理
+     * 单个弹道每 tick 的扫描开销估计（纳秒；尚无测量时为 NaN）
      */
-    public static boolean isProjectileTracked(UUID uuid) {
-        return activeProjectiles.containsKey(uuid);
+    public static double getTrackingCostNs() {
+        return threatRanking.getCostPerProjectileNs();
+    }
+
+    public static long getEvictedProjectiles() {
+        return threatRanking.getEvictions();
+    }
+
+    /**
+     * 等待初始化（完整预测与轨迹记录）的新弹道数
+     */
+    public static int getSetupQueueDepth() {
+        return pendingSetups.size();
+    }
+
+    /**
+     * 新弹道从发现到完成初始化的平均延迟（tick，指数滑动平均）
+     */
+    public static double getSetupLagTicks() {
+        return setupLagTicks;
+    }
+
+    public static int getMaxSetupLagTicks() {
+        return maxSetupLagTicks;
+    }
+
+    public static long getCompletedSetups() {
+        return completedSetups;
     }
 
     /**
@@ -620,21 +1144,18 @@ public class ProjectileTrackerClient {
      */
     private static boolean inferIsLocalPlayerShot(MinecraftClient client, Entity projectile) {
         PlayerEntity player = client.player;
-        double distance = player.getPos().distanceTo(projectile.getPos());
-        if (distance > 2.0) {
+        if (player.getPos().squaredDistanceTo(projectile.getPos()) > 2.0 * 2.0) {
             return false;
         }
 
         Vec3d playerLook = player.getRotationVec(1.0f);
         Vec3d projVel = projectile.getVelocity();
-        if (projVel.lengthSquared() < 1.0e-9) {
+        double speed = projVel.length();
+        if (speed < 1.0e-4) {
             return false;
         }
-        Vec3d projDir = projVel.normalize();
-        double dot = playerLook.dotProduct(projDir);
-        double angle = Math.acos(Math.max(-1.0, Math.min(1.0, dot)));
-        // 15° 以内视为本地玩家射出
-        return angle < Math.toRadians(15.0);
+        // 15° 以内视为本地玩家射出（比较余弦，不求 acos）
+        return playerLook.dotProduct(projVel) > LOCAL_SHOT_MAX_ANGLE_COS * speed;
     }
 
     /**
@@ -642,46 +1163,70 @@ public class ProjectileTrackerClient {
      * 适用于离线模式服务器 getOwner() 返回 null 的情况
      */
     private static String inferShooterFromPosition(Entity projectile) {
-        Vec3d projectilePos = projectile.getPos();
+        PlayerPoseHistory shooter = inferShooterPose(projectile);
+        return shooter != null ? shooter.getName() : "Unknown";
+    }
+
+    /**
+     * 找出最可能射出该弹道的玩家
+     *
+     * 只查询姿态网格中弹道附近的玩家，与每个玩家在弹道估计发射 tick（前后各 1 tick）时的姿态比较，
+     * 而不是当前姿态。距离与夹角先用平方距离和余弦阈值筛选，只对通过筛选的候选求 acos 打分。
+     *
+     * @return 最佳匹配；没有足够可信的候选时为 null
+     */
+    private static PlayerPoseHistory inferShooterPose(Entity projectile) {
         Vec3d rawVelocity = projectile.getVelocity();
-        if (rawVelocity.lengthSquared() < 1.0e-9) {
-            return "Unknown";
+        double speed = rawVelocity.length();
+        if (speed < 1.0e-4) {
+            return null;
         }
-        Vec3d projectileVelocity = rawVelocity.normalize();
-
-        String bestMatch = "Unknown";
+        double dirX = rawVelocity.x / speed;
+        double dirY = rawVelocity.y / speed;
+        double dirZ = rawVelocity.z / speed;
+
+        // 回退到发射时的位置（客户端刚加载的弹道 age 通常为 0~1，按匀速近似即可）
+        int age = Math.max(0, projectile.age);
+        double projX = projectile.getX() - rawVelocity.x * age;
+        double projY = projectile.getY() - rawVelocity.y * age;
+        double projZ = projectile.getZ() - rawVelocity.z * age;
+        int launchTick = tickCounter - age - SHOOTER_POSE_LAG_TICKS;
+
+        PlayerPoseHistory bestMatch = null;
         double bestScore = Double.MAX_VALUE;
 
-        // 遍历所有玩家快照，找到最可能的射手
-        for (PlayerSnapshot snapshot : lastPlayerSnapshots.values()) {
-            // snapshot.position 已经是眼睛位置
-            double distance = snapshot.position.distanceTo(projectilePos);
-
-            // 弹道必须在玩家附近（5格内，缩小范围提高精度）
-            if (distance > 5.0) continue;
-
-            // 计算玩家视线方向和弹道方向的夹角
-            double dotProduct = snapshot.lookDirection.dotProduct(projectileVelocity);
-            double angle = Math.acos(Math.max(-1.0, Math.min(1.0, dotProduct)));
-
-            // 角度超过 30° 直接排除
-            if (angle > Math.toRadians(30.0)) continue;
-
-            // 计算综合分数（距离 + 角度偏差）
-            double score = distance * 0.5 + angle * 3.0;
-
-            if (score < bestScore) {
-                bestScore = score;
-                bestMatch = snapshot.name;
+        List<PlayerPoseHistory> candidates = PlayerPoseHistory.near(projX, projY, projZ, SHOOTER_MAX_DISTANCE);
+        for (int i = 0; i < candidates.size(); i++) {
+            PlayerPoseHistory history = candidates.get(i);
+            for (int tick = launchTick - 1; tick <= launchTick + 1; tick++) {
+                int slot = history.slotAt(tick);
+                double dx = history.getEyeX(slot) - projX;
+                double dy = history.getEyeY(slot) - projY;
+                double dz = history.getEyeZ(slot) - projZ;
+                double distanceSq = dx * dx + dy * dy + dz * dz;
+
+                // 弹道必须在玩家附近（5格内，缩小范围提高精度）
+                if (distanceSq > SHOOTER_MAX_DISTANCE * SHOOTER_MAX_DISTANCE) continue;
+
+                // 玩家视线方向和弹道方向的夹角超过 30° 直接排除
+                double dotProduct = history.getLookX(slot) * dirX
+                        + history.getLookY(slot) * dirY
+                        + history.getLookZ(slot) * dirZ;
+                if (dotProduct < SHOOTER_MAX_ANGLE_COS) continue;
+
+                // 计算综合分数（距离 + 角度偏差）
+                double angle = Math.acos(Math.min(1.0, dotProduct));
+                double score = Math.sqrt(distanceSq) * 0.5 + angle * 3.0;
+
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestMatch = history;
+                }
             }
         }
 
-        // 如果最佳匹配分数太差，返回 Unknown
-        if (bestScore > 3.0) {
-            return "Unknown";
-        }
-
-        return bestMatch;
+        // 如果最佳匹配分数太差，视为无法推断
+        return bestScore <= 3.0 ? bestMatch : null;
     }
 
     /**
@@ -0,0 +1,179 @@
+package com.example.playerhighlight;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.RaycastContext;
+import net.minecraft.world.World;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SegmentRaycaster 正确性自检
+ *
+ * 在玩家周围当前已加载的真实方块布局上随机生成弹道长度的线段（<= 3 格），
+ * 分别用 SegmentRaycaster 与原版 World.raycast（COLLIDER / 无流体）检测，
+ * 要求命中与否及命中位置逐位一致。通过 /bowstatus raycheck 触发。
+ *
+ * /bowstatus raycheck record 把玩家周围的地形录制为 VoxelGridWorld 布局文件，
+ * 可放入 src/test/resources/layouts 由 SegmentRaycasterTest 离线回放（与原版射线遍历对比，可复现；现有布局均为手写）。
+ */
+public final class RaycastVerifier {
+    private RaycastVerifier() {
+    }
+
+    private static final double SAMPLE_RADIUS = 24.0;
+    private static final double MAX_SEGMENT_LENGTH = 3.0;
+    private static final int MAX_REPORTED_MISMATCHES = 5;
+
+    private static final Path LAYOUT_DIR = FabricLoader.getInstance().getConfigDir().resolve("playerhighlight-layouts");
+    private static final int RECORD_RADIUS = 24;
+    private static final int RECORD_HALF_HEIGHT = 12;
+
+    /**
+     * 运行一轮对比
+     *
+     * @param world 客户端世界
+     * @param center 采样中心（通常为玩家位置）
+     * @param samples 线段数量
+     * @param seed 随机种子（便于复现）
+     */
+    public static Result run(World world, Vec3d center, int samples, long seed) {
+        Random random = new Random(seed);
+        CollisionSnapshot.View collision = CollisionSnapshot.forWorld(world).newView();
+        double[] hit = new double[3];
+        Result result = new Result(seed);
+
+        for (int i = 0; i < samples; i++) {
+            // 偏向玩家脚下附近的高度，使更多线段穿过地形表面
+            double sx = center.x + (random.nextDouble() * 2.0 - 1.0) * SAMPLE_RADIUS;
+            double sy = center.y + (random.nextDouble() * 2.0 - 1.0) * 4.0;
+            double sz = center.z + (random.nextDouble() * 2.0 - 1.0) * SAMPLE_RADIUS;
+
+            double length = random.nextDouble() * MAX_SEGMENT_LENGTH;
+            double dx = random.nextGaussian();
+            double dy = random.nextGaussian();
+            double dz = random.nextGaussian();
+            double norm = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (norm < 1.0e-9) {
+                continue;
+            }
+            double ex = sx + dx / norm * length;
+            double ey = sy + dy / norm * length;
+            double ez = sz + dz / norm * length;
+
+            Vec3d start = new Vec3d(sx, sy, sz);
+            Vec3d end = new Vec3d(ex, ey, ez);
+            BlockHitResult vanilla = world.raycast(new RaycastContext(
+                    start,
+                    end,
+                    RaycastContext.ShapeType.COLLIDER,
+                    RaycastContext.FluidHandling.NONE,
+                    null
+            ));
+            boolean vanillaHit = vanilla.getType() != HitResult.Type.MISS;
+            boolean fastHit = SegmentRaycaster.raycast(collision, sx, sy, sz, ex, ey, ez, hit);
+
+            result.segments++;
+            if (vanillaHit) {
+                result.hits++;
+            }
+
+            boolean match = vanillaHit == fastHit;
+            if (match && vanillaHit) {
+                Vec3d expected = vanilla.getPos();
+                match = expected.x == hit[0] && expected.y == hit[1] && expected.z == hit[2];
+            }
+            if (!match) {
+                result.mismatches++;
+                if (result.details.size() < MAX_REPORTED_MISMATCHES) {
+                    result.details.add(String.format(
+                            "(%.4f, %.4f, %.4f) -> (%.4f, %.4f, %.4f) vanilla=%s fast=%s",
+                            sx, sy, sz, ex, ey, ez,
+                            vanillaHit ? formatPos(vanilla.getPos()) : "MISS",
+                            fastHit ? String.format("(%.6f, %.6f, %.6f)", hit[0], hit[1], hit[2]) : "MISS"
+                    ));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 把 center 周围的地形录制为布局文件
+     *
+     * 碰撞形状与 VoxelGridWorld.Shape 之一相同的方块（完整方块、台阶、单独的栅栏柱、朝北楼梯等）按原形状记录；
+     * 其余有碰撞形状的方块（连接的栅栏、其他朝向的楼梯等）记为完整方块，录制的布局在这些位置与原地形不完全一致。
+     *
+     * @return 写出的文件
+     */
+    public static Path recordLayout(World world, Vec3d center, String name) throws IOException {
+        int centerX = MathHelper.floor(center.x);
+        int centerY = MathHelper.floor(center.y);
+        int centerZ = MathHelper.floor(center.z);
+        int minY = Math.max(world.getBottomY(), centerY - RECORD_HALF_HEIGHT);
+        int maxY = Math.min(world.getTopY() - 1, centerY + RECORD_HALF_HEIGHT);
+        VoxelGridWorld grid = new VoxelGridWorld(centerX - RECORD_RADIUS, minY, centerZ - RECORD_RADIUS,
+                RECORD_RADIUS * 2 + 1, maxY - minY + 1, RECORD_RADIUS * 2 + 1);
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int x = centerX - RECORD_RADIUS; x <= centerX + RECORD_RADIUS; x++) {
+            for (int z = centerZ - RECORD_RADIUS; z <= centerZ + RECORD_RADIUS; z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    BlockState state = world.getBlockState(pos.set(x, y, z));
+                    if (state.isAir()) {
+                        continue;
+                    }
+                    VoxelShape shape = state.getCollisionShape(world, pos);
+                    VoxelGridWorld.Shape recorded = null;
+                    if (!shape.isEmpty()) {
+                        recorded = VoxelGridWorld.Shape.match(shape);
+                        if (recorded == null) {
+                            recorded = VoxelGridWorld.Shape.FULL_CUBE;
+                        }
+                    }
+                    grid.setBlock(x, y, z, recorded, !state.getFluidState().isEmpty());
+                }
+            }
+        }
+
+        Files.createDirectories(LAYOUT_DIR);
+        Path file = LAYOUT_DIR.resolve(name + ".txt");
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.write(String.format("# recorded at (%d, %d, %d)%n", centerX, centerY, centerZ));
+            grid.writeLayout(writer);
+        }
+        return file;
+    }
+
+    private static String formatPos(Vec3d pos) {
+        return String.format("(%.6f, %.6f, %.6f)", pos.x, pos.y, pos.z);
+    }
+
+    /**
+     * 对比结果
+     */
+    public static final class Result {
+        public final long seed;
+        public int segments;
+        public int hits;
+        public int mismatches;
+        public final List<String> details = new ArrayList<>();
+
+        Result(long seed) {
+            this.seed = seed;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.playerhighlight;
+
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+
+/**
+ * 弹道短线段专用的体素遍历射线检测（Amanatides–Woo DDA）
+ *
+ * 每 tick 的位移通常不超过 ~3 格且大多在空气中，原版 RaycastContext 流程开销偏大。
+ * 这里直接在碰撞快照上按体素遍历：
+ * - 空形状直接跳过
+ * - 完整方块（VoxelShapes.fullCube）用解析方式求交，不分配对象
+ * - 其余（台阶、栅栏等）才回退到 VoxelShape#raycast 精确检测
+ *
+ * 遍历顺序、起终点外扩（1e-7）与求交公式均与原版 BlockView.raycast / Box.raycast 一致，
+ * 因此命中位置与原先的 BlockHitResult 路径逐位相同。
+ *
+ * 体素遍历本身与方块来源无关（见 {@link VoxelHitTest}），内存体素网格（VoxelGridWorld）复用同一套遍历与完整方块求交。
+ */
+public final class SegmentRaycaster {
+    private SegmentRaycaster() {
+    }
+
+    private static final double EPSILON = 1.0E-7;
+
+    /**
+     * 单个体素的求交检测（由碰撞世界实现）
+     */
+    interface VoxelHitTest {
+        /**
+         * @param hitOut 命中时写入命中位置（长度 >= 3）
+         * @return 线段是否与该体素内的碰撞形状相交
+         */
+        boolean hitVoxel(int blockX, int blockY, int blockZ,
+                         double startX, double startY, double startZ,
+                         double endX, double endY, double endZ,
+                         double[] hitOut);
+    }
+
+    /**
+     * 沿线段做 COLLIDER 射线检测
+     *
+     * @param collision 碰撞快照视图
+     * @param hitOut 命中时写入命中位置（长度 >= 3）
+     * @return 是否命中
+     */
+    public static boolean raycast(CollisionSnapshot.View collision,
+                                  double startX, double startY, double startZ,
+                                  double endX, double endY, double endZ,
+                                  double[] hitOut) {
+        return traverse(collision, startX, startY, startZ, endX, endY, endZ, hitOut);
+    }
+
+    /**
+     * 按原版顺序遍历线段经过的体素，返回第一个命中的体素的命中位置
+     */
+    static boolean traverse(VoxelHitTest voxels,
+                            double startX, double startY, double startZ,
+                            double endX, double endY, double endZ,
+                            double[] hitOut) {
+        if (Double.compare(startX, endX) == 0 && Double.compare(startY, endY) == 0 && Double.compare(startZ, endZ) == 0) {
+            return false;
+        }
+
+        // 与原版一致：遍历用的起终点各向外扩 1e-7
+        double farX = lerp(-EPSILON, endX, startX);
+        double farY = lerp(-EPSILON, endY, startY);
+        double farZ = lerp(-EPSILON, endZ, startZ);
+        double nearX = lerp(-EPSILON, startX, endX);
+        double nearY = lerp(-EPSILON, startY, endY);
+        double nearZ = lerp(-EPSILON, startZ, endZ);
+
+        int blockX = floor(nearX);
+        int blockY = floor(nearY);
+        int blockZ = floor(nearZ);
+        if (voxels.hitVoxel(blockX, blockY, blockZ, startX, startY, startZ, endX, endY, endZ, hitOut)) {
+            return true;
+        }
+
+        double diffX = farX - nearX;
+        double diffY = farY - nearY;
+        double diffZ = farZ - nearZ;
+        int stepX = sign(diffX);
+        int stepY = sign(diffY);
+        int stepZ = sign(diffZ);
+        double deltaX = stepX == 0 ? Double.MAX_VALUE : (double) stepX / diffX;
+        double deltaY = stepY == 0 ? Double.MAX_VALUE : (double) stepY / diffY;
+        double deltaZ = stepZ == 0 ? Double.MAX_VALUE : (double) stepZ / diffZ;
+        double maxX = deltaX * (stepX > 0 ? 1.0 - fractionalPart(nearX) : fractionalPart(nearX));
+        double maxY = deltaY * (stepY > 0 ? 1.0 - fractionalPart(nearY) : fractionalPart(nearY));
+        double maxZ = deltaZ * (stepZ > 0 ? 1.0 - fractionalPart(nearZ) : fractionalPart(nearZ));
+
+        while (maxX <= 1.0 || maxY <= 1.0 || maxZ <= 1.0) {
+            if (maxX < maxY) {
+                if (maxX < maxZ) {
+                    blockX += stepX;
+                    maxX += deltaX;
+                } else {
+                    blockZ += stepZ;
+                    maxZ += deltaZ;
+                }
+            } else if (maxY < maxZ) {
+                blockY += stepY;
+                maxY += deltaY;
+            } else {
+                blockZ += stepZ;
+                maxZ += deltaZ;
+            }
+
+            if (voxels.hitVoxel(blockX, blockY, blockZ, startX, startY, startZ, endX, endY, endZ, hitOut)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 线段与单个方块的碰撞形状求交
+     */
+    static boolean hitShape(VoxelShape shape, int blockX, int blockY, int blockZ,
+                            double startX, double startY, double startZ,
+                            double endX, double endY, double endZ,
+                            double[] hitOut) {
+        if (shape.isEmpty()) {
+            return false;
+        }
+        if (shape == VoxelShapes.fullCube()) {
+            return raycastFullCube(blockX, blockY, blockZ, startX, startY, startZ, endX, endY, endZ, hitOut);
+        }
+
+        // 非完整方块：回退到原版精确形状检测
+        BlockHitResult hit = shape.raycast(
+                new Vec3d(startX, startY, startZ),
+                new Vec3d(endX, endY, endZ),
+                new BlockPos(blockX, blockY, blockZ)
+        );
+        if (hit == null) {
+            return false;
+        }
+        Vec3d pos = hit.getPos();
+        hitOut[0] = pos.x;
+        hitOut[1] = pos.y;
+        hitOut[2] = pos.z;
+        return true;
+    }
+
+    /**
+     * 完整方块求交（等价于 VoxelShape#raycast + Box.raycast 对单位立方体的计算）
+     */
+    static boolean raycastFullCube(int blockX, int blockY, int blockZ,
+                                           double startX, double startY, double startZ,
+                                           double endX, double endY, double endZ,
+                                           double[] hitOut) {
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double dz = endZ - startZ;
+        if (dx * dx + dy * dy + dz * dz < EPSILON) {
+            return false;
+        }
+
+        // 起点已在方块内部：原版返回 start + 0.001 * delta
+        double insideX = startX + dx * 0.001;
+        double insideY = startY + dy * 0.001;
+        double insideZ = startZ + dz * 0.001;
+        if (isInUnitCube(insideX - blockX) && isInUnitCube(insideY - blockY) && isInUnitCube(insideZ - blockZ)) {
+            hitOut[0] = insideX;
+            hitOut[1] = insideY;
+            hitOut[2] = insideZ;
+            return true;
+        }
+
+        double minX = blockX;
+        double minY = blockY;
+        double minZ = blockZ;
+        double maxX = 1.0 + blockX;
+        double maxY = 1.0 + blockY;
+        double maxZ = 1.0 + blockZ;
+
+        double t = 1.0;
+        boolean hit = false;
+
+        if (dx > EPSILON) {
+            double c = traceFace(t, dx, dy, dz, minX, minY, maxY, minZ, maxZ, startX, startY, startZ);
+            if (c >= 0.0) { t = c; hit = true; }
+        } else if (dx < -EPSILON) {
+            double c = traceFace(t, dx, dy, dz, maxX, minY, maxY, minZ, maxZ, startX, startY, startZ);
+            if (c >= 0.0) { t = c; hit = true; }
+        }
+
+        if (dy > EPSILON) {
+            double c = traceFace(t, dy, dz, dx, minY, minZ, maxZ, minX, maxX, startY, startZ, startX);
+            if (c >= 0.0) { t = c; hit = true; }
+        } else if (dy < -EPSILON) {
+            double c = traceFace(t, dy, dz, dx, maxY, minZ, maxZ, minX, maxX, startY, startZ, startX);
+            if (c >= 0.0) { t = c; hit = true; }
+        }
+
+        if (dz > EPSILON) {
+            double c = traceFace(t, dz, dx, dy, minZ, minX, maxX, minY, maxY, startZ, startX, startY);
+            if (c >= 0.0) { t = c; hit = true; }
+        } else if (dz < -EPSILON) {
+            double c = traceFace(t, dz, dx, dy, maxZ, minX, maxX, minY, maxY, startZ, startX, startY);
+            if (c >= 0.0) { t = c; hit = true; }
+        }
+
+        if (!hit) {
+            return false;
+        }
+        hitOut[0] = startX + t * dx;
+        hitOut[1] = startY + t * dy;
+        hitOut[2] = startZ + t * dz;
+        return true;
+    }
+
+    /**
+     * 单个面求交（与原版 Box#traceCollisionSide 相同的判定）
+     *
+     * @return 新的最近参数 t；不更新时返回 -1
+     */
+    private static double traceFace(double currentT, double deltaA, double deltaB, double deltaC,
+                                    double plane, double minB, double maxB, double minC, double maxC,
+                                    double startA, double startB, double startC) {
+        double t = (plane - startA) / deltaA;
+        double b = startB + t * deltaB;
+        double c = startC + t * deltaC;
+        if (0.0 < t && t < currentT
+                && minB - EPSILON < b && b < maxB + EPSILON
+                && minC - EPSILON < c && c < maxC + EPSILON) {
+            return t;
+        }
+        return -1.0;
+    }
+
+    private static boolean isInUnitCube(double local) {
+        return local >= 0.0 && local < 1.0;
+    }
+
+    private static double lerp(double delta, double start, double end) {
+        return start + delta * (end - start);
+    }
+
+    private static int floor(double value) {
+        int i = (int) value;
+        return value < (double) i ? i - 1 : i;
+    }
+
+    private static int sign(double value) {
+        if (value == 0.0) {
+            return 0;
+        }
+        return value > 0.0 ? 1 : -1;
+    }
+
+    private static double fractionalPart(double value) {
+        return value - Math.floor(value);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.playerhighlight;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个客户端 tick 的全局轨迹模拟时间预算（纳秒）
+ *
+ * 追踪器、弓箭预瞄与散布计算共享同一份预算：每个 tick 开始时按配置重置，
+ * 模拟前按切片领取（{@link #claim}），结束后按实际耗时结算（{@link #settle}），超支部分从剩余预算中扣除。
+ * 预算耗尽后新的切片领取不到时间，未完成的模拟保存积分状态，等下一 tick 重置后继续（见 PredictionExecutor）。
+ *
+ * 线程安全：剩余预算为原子计数，可在任意线程领取与结算。
+ */
+public final class SimulationBudget {
+    private SimulationBudget() {
+    }
+
+    private static final long NANOS_PER_MS = 1_000_000L;
+    private static final int SLICES_PER_TICK = 4;  // 单个模拟一次最多领取预算的 1/4，避免一条长轨迹独占整个 tick
+
+    private static final AtomicLong remainingNs = new AtomicLong(Long.MAX_VALUE);
+    private static volatile long sliceNs = Long.MAX_VALUE;
+    private static volatile long exhaustedTicks = 0;  // 预算被用完的 tick 数（统计用）
+
+    /**
+     * 新的客户端 tick：按配置重置预算（客户端线程调用）
+     */
+    public static void beginTick() {
+        if (remainingNs.get() <= 0) {
+            exhaustedTicks++;
+        }
+        long budgetNs = (long) (ModConfig.getInstance().getSimulationBudgetMs() * NANOS_PER_MS);
+        sliceNs = Math.max(1L, budgetNs / SLICES_PER_TICK);
+        remainingNs.set(budgetNs);
+    }
+
+    /**
+     * 领取一个切片
+     *
+     * @return 领到的时间（纳秒）；预算已耗尽时为 0
+     */
+    public static long claim() {
+        long slice = sliceNs;
+        while (true) {
+            long remaining = remainingNs.get();
+            if (remaining <= 0) {
+                return 0;
+            }
+            long granted = Math.min(slice, remaining);
+            if (remainingNs.compareAndSet(remaining, remaining - granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * 按实际耗时结算切片：未用完的部分退回，超支的部分继续扣除
+     */
+    public static void settle(long grantedNs, long usedNs) {
+        if (grantedNs != usedNs) {
+            remainingNs.addAndGet(grantedNs - usedNs);
+        }
+    }
+
+    /**
+     * 扣除不经过切片领取的模拟耗时（散布采样）
+     */
+    public static void charge(long usedNs) {
+        remainingNs.addAndGet(-usedNs);
+    }
+
+    public static boolean isExhausted() {
+        return remainingNs.get() <= 0;
+    }
+
+    /**
+     * 本 tick 剩余预算（纳秒，可能为负：超支）
+     */
+    public static long getRemainingNs() {
+        return remainingNs.get();
+    }
+
+    public static long getExhaustedTicks() {
+        return exhaustedTicks;
+    }
+}
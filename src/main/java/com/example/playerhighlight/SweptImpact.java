@@ -0,0 +1,176 @@
+package com.example.playerhighlight;
+
+/**
+ * 预测轨迹与移动中的玩家碰撞箱之间的连续碰撞检测
+ *
+ * 玩家按当前速度匀速外推，弹道沿预测轨迹点（按 tick 线性插值）运动：
+ * 在两者的相对坐标系中，每段轨迹都是一条线段，碰撞箱静止不动。
+ * 对每段做 slab 测试得到首次进入碰撞箱的时间（time-to-impact），
+ * 同时解析求出与碰撞箱中心的最近距离（closest approach）。
+ *
+ * 每个弹道只遍历外推窗口内的几十段轨迹，没有分配，可以每 tick 为所有追踪的弹道重新计算。
+ */
+public final class SweptImpact {
+    private SweptImpact() {
+    }
+
+    /** 弹道本身的半宽（箭矢碰撞箱 0.5 格），碰撞箱按此外扩 */
+    private static final double PROJECTILE_HALF_SIZE = 0.25;
+
+    /**
+     * 计算结果（调用方持有并复用）
+     */
+    public static final class Result {
+        /** 距离命中的 tick 数（可为小数；未命中为 -1） */
+        public double timeToImpact = -1.0;
+        /** 窗口内与碰撞箱中心的最近距离（格；没有可用轨迹时为正无穷） */
+        public double closestApproach = Double.POSITIVE_INFINITY;
+        /** 最近距离出现在多少 tick 之后 */
+        public double closestApproachTicks = -1.0;
+
+        public boolean hasImpact() {
+            return timeToImpact >= 0.0;
+        }
+
+        void reset() {
+            timeToImpact = -1.0;
+            closestApproach = Double.POSITIVE_INFINITY;
+            closestApproachTicks = -1.0;
+        }
+    }
+
+    /**
+     * 计算弹道相对玩家的命中时间与最近距离
+     *
+     * @param prediction 弹道预测
+     * @param nowTick 当前时刻对应的预测 tick（距预测初始状态经过的 tick）
+     * @param playerX 玩家脚底位置
+     * @param playerVelX 玩家速度（格/tick）
+     * @param halfWidth 玩家碰撞箱半宽
+     * @param height 玩家碰撞箱高度
+     * @param horizonTicks 外推窗口（tick）：玩家匀速外推只在短时间内可信
+     * @param out 写入结果
+     * @return 是否会命中
+     */
+    public static boolean compute(ProjectilePrediction prediction, double nowTick,
+                                  double playerX, double playerY, double playerZ,
+                                  double playerVelX, double playerVelY, double playerVelZ,
+                                  double halfWidth, double height, int horizonTicks,
+                                  Result out) {
+        out.reset();
+        int count = prediction.getPointCount();
+        if (count < 2) {
+            return false;
+        }
+
+        double endTick = nowTick + horizonTicks;
+        double halfX = halfWidth + PROJECTILE_HALF_SIZE;
+        double halfY = height * 0.5 + PROJECTILE_HALF_SIZE;
+        double centerY = playerY + height * 0.5;
+
+        for (int i = 0; i + 1 < count; i++) {
+            double t0 = prediction.getPointTick(i);
+            double t1 = prediction.getPointTick(i + 1);
+            if (t1 <= nowTick || t1 <= t0) {
+                continue;
+            }
+            if (t0 >= endTick) {
+                break;
+            }
+
+            // 把线段裁剪到 [nowTick, endTick]
+            double spanTicks = t1 - t0;
+            double fromTick = Math.max(t0, nowTick);
+            double toTick = Math.min(t1, endTick);
+            double fromS = (fromTick - t0) / spanTicks;
+            double toS = (toTick - t0) / spanTicks;
+
+            double px = prediction.getPointX(i);
+            double py = prediction.getPointY(i);
+            double pz = prediction.getPointZ(i);
+            double dx = prediction.getPointX(i + 1) - px;
+            double dy = prediction.getPointY(i + 1) - py;
+            double dz = prediction.getPointZ(i + 1) - pz;
+
+            // 相对位置 = 弹道位置 - 玩家碰撞箱中心（玩家位置随时间外推）
+            double fromElapsed = fromTick - nowTick;
+            double toElapsed = toTick - nowTick;
+            double ax = px + dx * fromS - (playerX + playerVelX * fromElapsed);
+            double ay = py + dy * fromS - (centerY + playerVelY * fromElapsed);
+            double az = pz + dz * fromS - (playerZ + playerVelZ * fromElapsed);
+            double bx = px + dx * toS - (playerX + playerVelX * toElapsed);
+            double by = py + dy * toS - (centerY + playerVelY * toElapsed);
+            double bz = pz + dz * toS - (playerZ + playerVelZ * toElapsed);
+
+            double rx = bx - ax;
+            double ry = by - ay;
+            double rz = bz - az;
+            double segmentTicks = toTick - fromTick;
+
+            // 最近距离：|a + s * r| 在 s ∈ [0, 1] 上的最小值
+            double lengthSq = rx * rx + ry * ry + rz * rz;
+            double closestS = lengthSq > 0.0
+                    ? Math.max(0.0, Math.min(1.0, -(ax * rx + ay * ry + az * rz) / lengthSq))
+                    : 0.0;
+            double cx = ax + rx * closestS;
+            double cy = ay + ry * closestS;
+            double cz = az + rz * closestS;
+            double distance = Math.sqrt(cx * cx + cy * cy + cz * cz);
+            if (distance < out.closestApproach) {
+                out.closestApproach = distance;
+                out.closestApproachTicks = fromElapsed + segmentTicks * closestS;
+            }
+
+            // slab 测试：首次进入外扩后的碰撞箱
+            if (!out.hasImpact()) {
+                double entryS = entryParameter(ax, ay, az, rx, ry, rz, halfX, halfY);
+                if (entryS >= 0.0) {
+                    out.timeToImpact = fromElapsed + segmentTicks * entryS;
+                }
+            }
+        }
+        return out.hasImpact();
+    }
+
+    /**
+     * 线段 a + s * r（s ∈ [0, 1]）首次进入以原点为中心、半尺寸为 (halfX, halfY, halfX) 的盒子时的 s；不相交返回 -1
+     */
+    private static double entryParameter(double ax, double ay, double az,
+                                         double rx, double ry, double rz,
+                                         double halfX, double halfY) {
+        double enter = 0.0;
+        double exit = 1.0;
+
+        if (rx != 0.0) {
+            double inv = 1.0 / rx;
+            double s0 = (-halfX - ax) * inv;
+            double s1 = (halfX - ax) * inv;
+            enter = Math.max(enter, Math.min(s0, s1));
+            exit = Math.min(exit, Math.max(s0, s1));
+        } else if (ax < -halfX || ax > halfX) {
+            return -1.0;
+        }
+
+        if (ry != 0.0) {
+            double inv = 1.0 / ry;
+            double s0 = (-halfY - ay) * inv;
+            double s1 = (halfY - ay) * inv;
+            enter = Math.max(enter, Math.min(s0, s1));
+            exit = Math.min(exit, Math.max(s0, s1));
+        } else if (ay < -halfY || ay > halfY) {
+            return -1.0;
+        }
+
+        if (rz != 0.0) {
+            double inv = 1.0 / rz;
+            double s0 = (-halfX - az) * inv;
+            double s1 = (halfX - az) * inv;
+            enter = Math.max(enter, Math.min(s0, s1));
+            exit = Math.min(exit, Math.max(s0, s1));
+        } else if (az < -halfX || az > halfX) {
+            return -1.0;
+        }
+
+        return enter <= exit ? enter : -1.0;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.playerhighlight;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * 按威胁程度排序的追踪弹道集合，以及由实测开销决定的追踪容量
+ *
+ * 威胁键越小越危险：
+ * 会命中本地玩家的弹道按剩余 tick 排在最前；其余按与玩家的最近距离（预测落点或外推轨迹）排序；
+ * 本地玩家自己射出的弹道、已落地的弹道依次排在最后。
+ * 容量已满时新弹道只有比当前最不危险的弹道更危险才会把它挤出，增删均为 O(log n)。
+ *
+ * 容量不再是固定常数：追踪器每 tick 的扫描耗时按指数滑动平均折算为每个弹道的开销，
+ * 容量 = 追踪器可用的时间预算 / 单个弹道开销。
+ *
+ * 仅在客户端线程访问。
+ */
+final class ThreatRanking {
+
+    // 威胁分层：同层内按剩余 tick / 距离排序，层与层之间不会交错
+    private static final double MISS_TIER = 1_000.0;
+    private static final double MAX_MISS_DISTANCE = 10_000.0;
+    private static final double LOCAL_SHOT_TIER = 100_000.0;
+    private static final double LANDED_TIER = 1_000_000.0;
+
+    /** 新弹道必须比最不危险的弹道至少危险这么多才替换它，避免两个弹道每 tick 来回替换 */
+    private static final double ENTRY_MARGIN = 2.0;
+
+    // 容量
+    private static final int INITIAL_CAPACITY = 50;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 256;
+    private static final double TRACKER_BUDGET_SHARE = 0.25;  // 追踪器扫描可用的时间 = 模拟预算的 1/4
+    private static final double COST_SMOOTHING = 0.05;
+    private static final long NANOS_PER_MS = 1_000_000L;
+
+    private static final Comparator<TrackedProjectile> ORDER =
+            Comparator.comparingDouble(TrackedProjectile::getThreatKey)
+                    .thenComparingInt(TrackedProjectile::getEntityId);
+
+    private final TreeSet<TrackedProjectile> ranked = new TreeSet<>(ORDER);
+    private double costPerProjectileNs = Double.NaN;  // 尚无测量时为 NaN
+    private int capacity = INITIAL_CAPACITY;
+    private long evictions = 0;
+
+    void add(TrackedProjectile tracked, double threatKey) {
+        tracked.setThreatKey(threatKey);
+        ranked.add(tracked);
+    }
+
+    /**
+     * 更新威胁键（先移出再插回，TreeSet 中的元素不能原地修改排序键）
+     */
+    void update(TrackedProjectile tracked, double threatKey) {
+        if (tracked.getThreatKey() == threatKey) {
+            return;
+        }
+        if (ranked.remove(tracked)) {
+            tracked.setThreatKey(threatKey);
+            ranked.add(tracked);
+        } else {
+            tracked.setThreatKey(threatKey);
+        }
+    }
+
+    /**
+     * 弹道已落地：降到最低的威胁层（落地后只为发光效果保留几秒）
+     */
+    void demoteLanded(TrackedProjectile tracked) {
+        if (tracked.getThreatKey() < LANDED_TIER) {
+            update(tracked, tracked.getThreatKey() + LANDED_TIER);
+        }
+    }
+
+    void remove(TrackedProjectile tracked) {
+        ranked.remove(tracked);
+    }
+
+    void clear() {
+        ranked.clear();
+    }
+
+    boolean isFull() {
+        return ranked.size() >= capacity;
+    }
+
+    boolean isOverCapacity() {
+        return ranked.size() > capacity;
+    }
+
+    /**
+     * 容量已满时，威胁键为 threatKey 的新弹道应挤出的弹道；不值得替换时返回 null
+     */
+    TrackedProjectile evictionCandidateFor(double threatKey) {
+        if (ranked.isEmpty()) {
+            return null;
+        }
+        TrackedProjectile least = ranked.last();
+        return threatKey < least.getThreatKey() - ENTRY_MARGIN ? least : null;
+    }
+
+    /**
+     * 当前最不危险的弹道（为空时返回 null）
+     */
+    TrackedProjectile leastThreatening() {
+        return ranked.isEmpty() ? null : ranked.last();
+    }
+
+    void recordEviction() {
+        evictions++;
+    }
+
+    /**
+     * 记录一次扫描的耗时，更新单个弹道的开销估计与容量
+     *
+     * @param scanNs 本 tick 扫描追踪弹道的耗时
+     * @param trackedCount 本 tick 扫描的弹道数
+     */
+    void recordScanCost(long scanNs, int trackedCount) {
+        if (trackedCount <= 0) {
+            return;
+        }
+        double sample = (double) scanNs / trackedCount;
+        costPerProjectileNs = Double.isNaN(costPerProjectileNs)
+                ? sample
+                : costPerProjectileNs + (sample - costPerProjectileNs) * COST_SMOOTHING;
+
+        double budgetNs = ModConfig.getInstance().getSimulationBudgetMs() * NANOS_PER_MS * TRACKER_BUDGET_SHARE;
+        double estimate = budgetNs / Math.max(1.0, costPerProjectileNs);
+        capacity = (int) Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, estimate));
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int size() {
+        return ranked.size();
+    }
+
+    /**
+     * 单个弹道每 tick 的扫描开销估计（纳秒；尚无测量时为 NaN）
+     */
+    double getCostPerProjectileNs() {
+        return costPerProjectileNs;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * 计算威胁键
+     *
+     * @param ticksToImpact 距离命中本地玩家的 tick 数（不会命中为负）
+     * @param missDistance 与本地玩家的最近距离（格）
+     * @param localPlayerShot 是否本地玩家自己射出
+     * @param landed 是否已落地
+     */
+    static double threatKey(double ticksToImpact, double missDistance, boolean localPlayerShot, boolean landed) {
+        double key = ticksToImpact >= 0.0
+                ? ticksToImpact
+                : MISS_TIER + Math.min(missDistance, MAX_MISS_DISTANCE);
+        if (localPlayerShot) {
+            key += LOCAL_SHOT_TIER;
+        }
+        if (landed) {
+            key += LANDED_TIER;
+        }
+        return key;
+    }
+
+    /**
+     * 直线外推（忽略重力与阻力）时弹道与目标点的最近距离，用于尚无预测的新弹道
+     *
+     * @param horizonTicks 外推的最大 tick 数
+     */
+    static double rayMissDistance(double x, double y, double z,
+                                  double velX, double velY, double velZ,
+                                  double targetX, double targetY, double targetZ,
+                                  int horizonTicks) {
+        double dx = targetX - x;
+        double dy = targetY - y;
+        double dz = targetZ - z;
+        double speedSq = velX * velX + velY * velY + velZ * velZ;
+        double t = speedSq > 0.0 ? (dx * velX + dy * velY + dz * velZ) / speedSq : 0.0;
+        t = Math.max(0.0, Math.min(horizonTicks, t));
+        double cx = dx - velX * t;
+        double cy = dy - velY * t;
+        double cz = dz - velZ * t;
+        return Math.sqrt(cx * cx + cy * cy + cz * cz);
+    }
+}
@@ -1,11 +1,19 @@
 package com.example.playerhighlight;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 追踪的弹道数据持有类
  *
  * 存储单个弹道的追踪信息，包括UUID、类型、预测结果等
+ *
+ * 预测结果由后台预测线程异步发布：刚开始追踪时 getPrediction() 可能为 null，
+ * 多次请求的结果按请求序号发布，较旧的结果不会覆盖较新的结果。
+ * 最新请求因模拟预算或地形未就绪而暂停时记录为“部分完成”（isPredictionPartial），
+ * 此时 getPrediction() 仍是较旧的结果，渲染时应区别于最新的完整预测。
+ * 模拟失败或被线程池拒绝的请求记为已放弃（abandonPrediction），不再视为等待中，之后可以重新请求。
  */
 public class TrackedProjectile {
     /** 过期时间：10秒未见则清理 */
@@ -14,42 +22,165 @@ public class TrackedProjectile {
     private static final long LANDED_CLEANUP_TIME_MS = 3000;
 
     private final UUID uuid;
+    private final int entityId;  // 客户端实体 ID（追踪状态的键）
     private final String type;
     private final String shooterName;
     private final String typeId;  // 弹道类型ID（如"ARROW"、"TRIDENT"）
-    private final ProjectilePrediction prediction;
-    private final boolean isNearPlayer;
+    private final boolean localPlayerShot;
+    private final AtomicReference<PublishedPrediction> published = new AtomicReference<>();
+    private final AtomicReference<ParkedPrediction> parked = new AtomicReference<>();
+    private final AtomicInteger abandonedSequence = new AtomicInteger();  // 不会再有结果的最新请求序号
+    private int requestedSequence;  // 仅客户端 tick 线程读写
     private long lastSeenTime;
+    private int seenGeneration;  // 最后一次在存活索引中见到时的扫描代数（仅客户端线程读写）
     private boolean hasLanded;
     private long landedTime;
+    // 相对本地玩家的连续碰撞检测结果（每 tick 由追踪器更新；仅客户端线程读写）
+    private double timeToImpact = -1.0;
+    private double closestApproach = Double.POSITIVE_INFINITY;
+    // 完整预测到达之前使用的临时预测（短时间、无地形碰撞；仅客户端线程读写）
+    private ProjectilePrediction provisionalPrediction;
+    private int provisionalStartTick = -1;
+    // ThreatRanking 的排序键（越小越危险；只能由 ThreatRanking 修改）
+    private double threatKey;
 
     /**
      * 构造函数
      *
      * @param uuid 弹道实体的UUID
+     * @param entityId 弹道实体的客户端 ID
      * @param type 弹道类型显示名（如 "Arrow", "Blaze Fireball"）
      * @param shooterName 射手名称（在创建时缓存）
      * @param typeId 弹道类型ID（如"ARROW"、"TRIDENT"）
-     * @param prediction 轨迹预测结果
-     * @param isNearPlayer 落点是否在警告范围内（创建时快照）
+     * @param localPlayerShot 是否本地玩家射出
      */
-    public TrackedProjectile(UUID uuid, String type, String shooterName, String typeId, ProjectilePrediction prediction, boolean isNearPlayer) {
+    public TrackedProjectile(UUID uuid, int entityId, String type, String shooterName, String typeId,
+                             boolean localPlayerShot) {
         this.uuid = uuid;
+        this.entityId = entityId;
         this.type = type;
         this.shooterName = shooterName;
         this.typeId = typeId;
-        this.prediction = prediction;
-        this.isNearPlayer = isNearPlayer;
+        this.localPlayerShot = localPlayerShot;
+        this.requestedSequence = 0;
         this.lastSeenTime = System.currentTimeMillis();
         this.hasLanded = false;
         this.landedTime = 0;
     }
 
     /**
-     * 更新最后见到时间
+     * 标记在本次扫描中见到
+     *
+     * @param generation 本次扫描的代数
+     * @param now 当前时间（毫秒）
      */
-    public void updateLastSeen() {
-        this.lastSeenTime = System.currentTimeMillis();
+    public void markSeen(int generation, long now) {
+        this.seenGeneration = generation;
+        this.lastSeenTime = now;
+    }
+
+    /**
+     * 是否在指定代数的扫描中见到过；代数落后即说明实体已不在世界中
+     */
+    public boolean wasSeenIn(int generation) {
+        return seenGeneration == generation;
+    }
+
+    /**
+     * 为新的预测请求分配序号（客户端 tick 线程调用）
+     */
+    public int nextPredictionSequence() {
+        return ++requestedSequence;
+    }
+
+    /**
+     * 是否有已提交但尚未发布结果的预测请求
+     */
+    public boolean hasPendingPrediction() {
+        PublishedPrediction current = published.get();
+        int abandoned = abandonedSequence.get();
+        if (current == null) {
+            return requestedSequence == 0 || abandoned < requestedSequence;
+        }
+        return Math.max(current.sequence, abandoned) < requestedSequence;
+    }
+
+    /**
+     * 放弃预测请求：模拟异常或被线程池拒绝，不会再有结果（可在预测线程上调用）
+     *
+     * 已发布的预测保持不变；放弃的是最新请求时 hasPendingPrediction() 变为 false，追踪器可以重新提交。
+     *
+     * @param sequence 请求序号
+     */
+    public void abandonPrediction(int sequence) {
+        abandonedSequence.accumulateAndGet(sequence, Math::max);
+    }
+
+    /**
+     * 发布预测结果（可在预测线程上调用）；比当前结果旧的请求会被丢弃
+     *
+     * @param sequence 请求序号
+     * @param prediction 轨迹预测
+     * @param startTick 预测初始状态对应的追踪器 tick
+     * @param isNearPlayer 落点是否在警告范围内
+     * @return 是否发布成功
+     */
+    public boolean publishPrediction(int sequence, ProjectilePrediction prediction, int startTick, boolean isNearPlayer) {
+        PublishedPrediction next = new PublishedPrediction(sequence, prediction, startTick, isNearPlayer);
+        while (true) {
+            PublishedPrediction current = published.get();
+            if (current != null && current.sequence >= sequence) {
+                return false;
+            }
+            if (published.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 记录预测请求在模拟中途暂停（可在预测线程上调用）；已发布或已被更新的请求取代时忽略
+     *
+     * @param sequence 请求序号
+     * @param ticksSimulated 暂停时已模拟的 tick 数
+     */
+    public void markPredictionParked(int sequence, int ticksSimulated) {
+        ParkedPrediction next = new ParkedPrediction(sequence, ticksSimulated);
+        while (true) {
+            ParkedPrediction current = parked.get();
+            if (current != null && current.sequence > sequence) {
+                return;
+            }
+            PublishedPrediction publishedNow = published.get();
+            if (publishedNow != null && publishedNow.sequence >= sequence) {
+                return;
+            }
+            if (parked.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 最新的预测请求是否暂停在模拟中途（部分完成）：当前预测（若有）来自较旧的请求
+     */
+    public boolean isPredictionPartial() {
+        return getPartialTicksSimulated() >= 0;
+    }
+
+    /**
+     * 暂停中的最新请求已模拟的 tick 数（没有部分完成的请求时为 -1）
+     */
+    public int getPartialTicksSimulated() {
+        ParkedPrediction current = parked.get();
+        if (current == null || current.sequence < requestedSequence || current.sequence <= abandonedSequence.get()) {
+            return -1;
+        }
+        PublishedPrediction publishedNow = published.get();
+        if (publishedNow != null && publishedNow.sequence >= current.sequence) {
+            return -1;
+        }
+        return current.ticksSimulated;
     }
 
     /**
@@ -82,6 +213,22 @@ public class TrackedProjectile {
         return uuid;
     }
 
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public boolean isLocalPlayerShot() {
+        return localPlayerShot;
+    }
+
+    public double getThreatKey() {
+        return threatKey;
+    }
+
+    void setThreatKey(double threatKey) {
+        this.threatKey = threatKey;
+    }
+
     public String getType() {
         return type;
     }
@@ -94,15 +241,111 @@ public class TrackedProjectile {
         return shooterName;
     }
 
+    /**
+     * 当前预测结果（首个结果发布之前为 null）
+     */
     public ProjectilePrediction getPrediction() {
-        return prediction;
+        PublishedPrediction current = published.get();
+        return current != null ? current.prediction : null;
     }
 
     public boolean isNearPlayer() {
-        return isNearPlayer;
+        PublishedPrediction current = published.get();
+        return current != null && current.isNearPlayer;
+    }
+
+    /**
+     * 设置临时预测：只用于完整预测到达之前的碰撞检测与威胁排序，不渲染、不触发警报
+     */
+    public void setProvisionalPrediction(ProjectilePrediction prediction, int startTick) {
+        this.provisionalPrediction = prediction;
+        this.provisionalStartTick = startTick;
+    }
+
+    public ProjectilePrediction getProvisionalPrediction() {
+        return provisionalPrediction;
+    }
+
+    public int getProvisionalStartTick() {
+        return provisionalStartTick;
+    }
+
+    /**
+     * 当前预测初始状态对应的追踪器 tick（尚无预测时为 -1）
+     */
+    public int getPredictionStartTick() {
+        PublishedPrediction current = published.get();
+        return current != null ? current.startTick : -1;
+    }
+
+    /**
+     * 已发布预测中包含的重预测次数
+     */
+    public int getRepredictCount() {
+        PublishedPrediction current = published.get();
+        return current != null ? current.sequence - 1 : 0;
     }
 
     public boolean hasLanded() {
         return hasLanded;
     }
+
+    /**
+     * 更新相对本地玩家的命中时间与最近距离（客户端 tick 线程调用）
+     */
+    public void updateImpact(SweptImpact.Result result) {
+        this.timeToImpact = result.timeToImpact;
+        this.closestApproach = result.closestApproach;
+    }
+
+    /**
+     * 按玩家当前速度外推，距离命中本地玩家的 tick 数（不会命中为 -1）
+     */
+    public double getTimeToImpact() {
+        return timeToImpact;
+    }
+
+    /**
+     * 外推窗口内与本地玩家碰撞箱中心的最近距离（格）
+     */
+    public double getClosestApproach() {
+        return closestApproach;
+    }
+
+    /**
+     * 是否正朝本地玩家（外推后的位置）飞来
+     */
+    public boolean isOnCollisionCourse() {
+        return timeToImpact >= 0.0;
+    }
+
+    /**
+     * 暂停中的预测请求（不可变，整体原子替换）
+     */
+    private static final class ParkedPrediction {
+        final int sequence;
+        final int ticksSimulated;
+
+        ParkedPrediction(int sequence, int ticksSimulated) {
+            this.sequence = sequence;
+            this.ticksSimulated = ticksSimulated;
+        }
+    }
+
+    /**
+     * 一次发布的预测（不可变，整体原子替换）
+     */
+    private static final class PublishedPrediction {
+        final int sequence;
+        final ProjectilePrediction prediction;
+        final int startTick;
+        final boolean isNearPlayer;
+
+        PublishedPrediction(int sequence, ProjectilePrediction prediction, int startTick, boolean isNearPlayer) {
+            this.sequence = sequence;
+            this.prediction = prediction;
+            this.startTick = startTick;
+            this.isNearPlayer = isNearPlayer;
+        }
+    }
 }
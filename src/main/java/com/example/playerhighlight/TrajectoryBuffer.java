@@ -0,0 +1,185 @@
+package com.example.playerhighlight;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的轨迹点缓冲区（packed double[]：x0,y0,z0,x1,y1,z1,...，以及每个点对应的模拟 tick）
+ *
+ * 由调用方持有并在多次模拟之间复用，避免每个轨迹点都分配一个 Vec3d。
+ * 非线程安全：同一个缓冲区只能被一个模拟同时使用。
+ */
+public final class TrajectoryBuffer {
+    private static final int DEFAULT_CAPACITY_POINTS = 96;
+
+    private double[] coords;
+    private int[] ticks;
+    private int size;
+
+    // 简化用的临时数组（与容量一起增长，多次模拟之间复用）
+    private boolean[] keep = new boolean[0];
+    private int[] rangeStack = new int[0];
+
+    public TrajectoryBuffer() {
+        this(DEFAULT_CAPACITY_POINTS);
+    }
+
+    public TrajectoryBuffer(int initialCapacityPoints) {
+        this.coords = new double[Math.max(1, initialCapacityPoints) * 3];
+        this.ticks = new int[Math.max(1, initialCapacityPoints)];
+        this.size = 0;
+    }
+
+    /**
+     * 清空（保留已分配的容量）
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 确保至少能容纳指定数量的点
+     */
+    public void ensureCapacity(int points) {
+        int required = points * 3;
+        if (required > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(required, coords.length * 2));
+            ticks = Arrays.copyOf(ticks, coords.length / 3);
+        }
+    }
+
+    /**
+     * 追加一个轨迹点
+     *
+     * @param tick 该点对应的模拟时间（从初始状态起经过的 tick 数）
+     */
+    public void add(double x, double y, double z, int tick) {
+        ensureCapacity(size + 1);
+        int base = size * 3;
+        coords[base] = x;
+        coords[base + 1] = y;
+        coords[base + 2] = z;
+        ticks[size] = tick;
+        size++;
+    }
+
+    /**
+     * 当前点数
+     */
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return coords[index * 3];
+    }
+
+    public double getY(int index) {
+        return coords[index * 3 + 1];
+    }
+
+    public double getZ(int index) {
+        return coords[index * 3 + 2];
+    }
+
+    public int getTick(int index) {
+        return ticks[index];
+    }
+
+    /**
+     * Douglas–Peucker 折线简化（原地压缩，保留首尾点与每个点的 tick）
+     *
+     * 误差按同步欧氏距离计算：删除的点与简化后线段上按 tick 线性插值的同一时刻位置相距不超过 tolerance（格），
+     * 与 ProjectilePrediction#samplePositionAtTick、SweptImpact 的按 tick 插值一致。
+     * 因此减速的直线段（火球等）也会保留中间点，不会只剩两端而让按时间取样的位置偏离。
+     * tolerance <= 0 时不做处理。
+     */
+    public void simplify(double tolerance) {
+        if (tolerance <= 0.0 || size <= 2) {
+            return;
+        }
+        if (keep.length < size) {
+            keep = new boolean[coords.length / 3];
+            rangeStack = new int[coords.length / 3 * 2];
+        }
+        Arrays.fill(keep, 0, size, false);
+        keep[0] = true;
+        keep[size - 1] = true;
+
+        double toleranceSq = tolerance * tolerance;
+        int stackSize = 0;
+        rangeStack[stackSize++] = 0;
+        rangeStack[stackSize++] = size - 1;
+        while (stackSize > 0) {
+            int last = rangeStack[--stackSize];
+            int first = rangeStack[--stackSize];
+            if (last - first < 2) {
+                continue;
+            }
+
+            int farthest = -1;
+            double farthestSq = toleranceSq;
+            for (int i = first + 1; i < last; i++) {
+                double distanceSq = synchronizedDistanceSq(i, first, last);
+                if (distanceSq > farthestSq) {
+                    farthestSq = distanceSq;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) {
+                continue;
+            }
+
+            keep[farthest] = true;
+            rangeStack[stackSize++] = first;
+            rangeStack[stackSize++] = farthest;
+            rangeStack[stackSize++] = farthest;
+            rangeStack[stackSize++] = last;
+        }
+
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            if (!keep[read]) {
+                continue;
+            }
+            if (write != read) {
+                coords[write * 3] = coords[read * 3];
+                coords[write * 3 + 1] = coords[read * 3 + 1];
+                coords[write * 3 + 2] = coords[read * 3 + 2];
+                ticks[write] = ticks[read];
+            }
+            write++;
+        }
+        size = write;
+    }
+
+    /**
+     * 点与线段 start-end 上同一 tick 的插值位置之间的距离平方
+     */
+    private double synchronizedDistanceSq(int point, int start, int end) {
+        int startTick = ticks[start];
+        int span = ticks[end] - startTick;
+        double t = span > 0 ? (double) (ticks[point] - startTick) / span : 0.0;
+
+        double ax = coords[start * 3];
+        double ay = coords[start * 3 + 1];
+        double az = coords[start * 3 + 2];
+        double dx = coords[point * 3] - (ax + (coords[end * 3] - ax) * t);
+        double dy = coords[point * 3 + 1] - (ay + (coords[end * 3 + 1] - ay) * t);
+        double dz = coords[point * 3 + 2] - (az + (coords[end * 3 + 2] - az) * t);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * 复制出紧凑数组（长度 = size * 3），用于生成不可变的预测结果
+     */
+    public double[] toPackedArray() {
+        return Arrays.copyOf(coords, size * 3);
+    }
+
+    /**
+     * 复制出每个点对应的 tick（长度 = size）
+     */
+    public int[] toTickArray() {
+        return Arrays.copyOf(ticks, size);
+    }
+}
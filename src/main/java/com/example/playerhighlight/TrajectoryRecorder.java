@@ -1,28 +1,29 @@
 package com.example.playerhighlight;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.util.math.Vec3d;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 实际轨迹记录器
  *
  * 记录弹射物的真实飞行路径，用于校准系统对比预测精度
+ *
+ * 以客户端实体 ID 为键，只在客户端线程访问
  */
 public class TrajectoryRecorder {
 
     private static final int MAX_RECORDING_TICKS = 400;  // 最多记录400 tick（上抛/长距离飞行也能覆盖）
     private static final double STILL_THRESHOLD_SQ = 0.01 * 0.01;
     private static final int STILL_TICKS_TO_FINALIZE = 4;
-    private static final ConcurrentHashMap<UUID, RecordedTrajectory> recordings = new ConcurrentHashMap<>();
+    private static final Int2ObjectOpenHashMap<RecordedTrajectory> recordings = new Int2ObjectOpenHashMap<>();
 
     /**
      * 开始记录弹射物轨迹
      */
-    public static void startRecording(UUID projectileId, String typeId,
+    public static void startRecording(int projectileId, String typeId,
                                        Vec3d initialPos, Vec3d initialVel,
                                        boolean localPlayerShot) {
         RecordedTrajectory recording = new RecordedTrajectory(typeId, initialPos, initialVel, localPlayerShot);
@@ -32,7 +33,7 @@ public class TrajectoryRecorder {
     /**
      * 更新弹射物位置（每tick调用）
      */
-    public static void recordPosition(UUID projectileId, Vec3d position) {
+    public static void recordPosition(int projectileId, Vec3d position) {
         RecordedTrajectory recording = recordings.get(projectileId);
         if (recording != null && !recording.isComplete()) {
             recording.addPosition(position);
@@ -42,7 +43,7 @@ public class TrajectoryRecorder {
     /**
      * 标记弹射物已落地
      */
-    public static void markLanded(UUID projectileId, Vec3d landingPos) {
+    public static void markLanded(int projectileId, Vec3d landingPos) {
         RecordedTrajectory recording = recordings.get(projectileId);
         if (recording != null) {
             if (recording.isComplete()) {
@@ -66,7 +67,7 @@ public class TrajectoryRecorder {
     /**
      * 获取记录（供调试用）
      */
-    public static RecordedTrajectory getRecording(UUID projectileId) {
+    public static RecordedTrajectory getRecording(int projectileId) {
         return recordings.get(projectileId);
     }
 
@@ -75,10 +76,7 @@ public class TrajectoryRecorder {
      *
      * <p>丢弃后将不会进入校准学习。</p>
      */
-    public static void discardRecording(UUID projectileId) {
-        if (projectileId == null) {
-            return;
-        }
+    public static void discardRecording(int projectileId) {
         recordings.remove(projectileId);
     }
 
@@ -87,8 +85,8 @@ public class TrajectoryRecorder {
      */
     public static void cleanup() {
         long currentTime = System.currentTimeMillis();
-        recordings.entrySet().removeIf(entry ->
-            (currentTime - entry.getValue().startTime) > 120000  // 120秒后清理：避免箭停在方块里导致样本被提前丢弃
+        recordings.values().removeIf(recording ->
+            (currentTime - recording.startTime) > 120000  // 120秒后清理：避免箭停在方块里导致样本被提前丢弃
         );
     }
 
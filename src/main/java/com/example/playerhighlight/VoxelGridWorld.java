@@ -0,0 +1,451 @@
+package com.example.playerhighlight;
+
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 内存体素网格上的碰撞世界（不依赖客户端世界）
+ *
+ * 每个方块由碰撞形状（无 / 完整方块 / {@link Shape} 中的几种常见非完整形状）与是否含流体组成，网格之外按空气处理。
+ * 射线检测复用 SegmentRaycaster 的体素遍历：完整方块走解析求交，非完整形状回退到 VoxelShape#raycast，
+ * 命中位置与客户端世界中相同布局的结果一致；
+ * 另维护 16x16x16 区段的占用计数与每列最高占用方块，供粗步进的区域/地形判断使用（非完整形状按占用计）。
+ *
+ * 用于基准测试与回放录制的竞技场布局：先用 {@link #setBlock} 搭建，搭建完成后可被多个线程同时模拟
+ * （查询只读，{@link #open()} 直接返回自身）。模拟进行中不得修改。
+ *
+ * 布局可以保存为文本（{@link #writeLayout} / {@link #readLayout}）：第一行 {@code grid ox oy oz sx sy sz}，
+ * 之后每行一段沿 x 方向连续的同类方块 {@code <kind> x1 y z x2}，{@code #} 开头为注释。
+ * kind 为 {@code solid}（完整方块）、{@code fluid}、{@code waterlogged}（含水的完整方块）、
+ * 形状名（如 {@code slab_bottom}）或 {@code waterlogged_} 加形状名。
+ * 离线回归测试的布局（src/test/resources/layouts）按此格式手写；
+ * 游戏内也可用 /bowstatus raycheck record 把玩家周围的真实地形录制成同样的格式。
+ */
+public final class VoxelGridWorld implements CollisionWorld, CollisionWorld.Provider, SegmentRaycaster.VoxelHitTest {
+
+    private static final byte SOLID = 1;
+    private static final byte FLUID = 2;
+    private static final int SHAPE_SHIFT = 2;  // 含碰撞形状时，高位存 Shape 的序号
+    private static final String WATERLOGGED_PREFIX = "waterlogged_";
+    private static final int SECTION_SHIFT = 4;
+    private static final int NO_TOP = Integer.MIN_VALUE;
+    private static final int MAX_TERRAIN_COLUMNS = 256;
+
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final byte[] cells;
+
+    // 区段占用计数（下标按网格内坐标 >> 4）
+    private final int sectionsX;
+    private final int sectionsY;
+    private final int sectionsZ;
+    private final int[] solidPerSection;
+    private final int[] fluidPerSection;
+
+    // 每列最高占用方块（碰撞或流体）的 y + 1，没有时为 NO_TOP
+    private final int[] columnTops;
+
+    /**
+     * 网格支持的碰撞形状（与原版对应方块的碰撞形状相同）
+     */
+    public enum Shape {
+        FULL_CUBE("solid", VoxelShapes.fullCube()),
+        SLAB_BOTTOM("slab_bottom", VoxelShapes.cuboid(0.0, 0.0, 0.0, 1.0, 0.5, 1.0)),
+        SLAB_TOP("slab_top", VoxelShapes.cuboid(0.0, 0.5, 0.0, 1.0, 1.0, 1.0)),
+        /** 未连接的栅栏柱：碰撞箱高 1.5 格 */
+        FENCE_POST("fence_post", VoxelShapes.cuboid(0.375, 0.0, 0.375, 0.625, 1.5, 0.625)),
+        /** 朝北的直楼梯：下半台阶 + 北侧上半 */
+        STAIRS_NORTH("stairs_north", VoxelShapes.union(
+                VoxelShapes.cuboid(0.0, 0.0, 0.0, 1.0, 0.5, 1.0),
+                VoxelShapes.cuboid(0.0, 0.5, 0.0, 1.0, 1.0, 0.5))),
+        CARPET("carpet", VoxelShapes.cuboid(0.0, 0.0, 0.0, 1.0, 0.0625, 1.0));
+
+        private static final Shape[] VALUES = values();
+
+        private final String layoutName;
+        private final VoxelShape shape;
+
+        Shape(String layoutName, VoxelShape shape) {
+            this.layoutName = layoutName;
+            this.shape = shape;
+        }
+
+        public VoxelShape getShape() {
+            return shape;
+        }
+
+        /**
+         * 按碰撞箱查找对应的形状（录制布局用）
+         *
+         * @return 没有对应的形状时返回 null
+         */
+        public static Shape match(VoxelShape shape) {
+            for (Shape candidate : VALUES) {
+                if (candidate.shape.getBoundingBoxes().equals(shape.getBoundingBoxes())) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 创建全空气的网格
+     *
+     * @param originX 网格最小角的方块坐标
+     * @param sizeX 网格尺寸（方块数）
+     */
+    public VoxelGridWorld(int originX, int originY, int originZ, int sizeX, int sizeY, int sizeZ) {
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive: " + sizeX + "x" + sizeY + "x" + sizeZ);
+        }
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.cells = new byte[Math.multiplyExact(Math.multiplyExact(sizeX, sizeY), sizeZ)];
+
+        this.sectionsX = ((sizeX - 1) >> SECTION_SHIFT) + 1;
+        this.sectionsY = ((sizeY - 1) >> SECTION_SHIFT) + 1;
+        this.sectionsZ = ((sizeZ - 1) >> SECTION_SHIFT) + 1;
+        this.solidPerSection = new int[sectionsX * sectionsY * sectionsZ];
+        this.fluidPerSection = new int[solidPerSection.length];
+
+        this.columnTops = new int[sizeX * sizeZ];
+        Arrays.fill(columnTops, NO_TOP);
+    }
+
+    /**
+     * 设置方块状态（网格外的坐标忽略）
+     *
+     * @param solid 是否为完整方块
+     * @param fluid 是否含流体
+     */
+    public void setBlock(int x, int y, int z, boolean solid, boolean fluid) {
+        setBlock(x, y, z, solid ? Shape.FULL_CUBE : null, fluid);
+    }
+
+    /**
+     * 设置方块状态（网格外的坐标忽略）
+     *
+     * @param shape 碰撞形状，null 表示没有碰撞
+     * @param fluid 是否含流体
+     */
+    public void setBlock(int x, int y, int z, Shape shape, boolean fluid) {
+        int lx = x - originX;
+        int ly = y - originY;
+        int lz = z - originZ;
+        if (!contains(lx, ly, lz)) {
+            return;
+        }
+
+        int index = cellIndex(lx, ly, lz);
+        byte previous = cells[index];
+        byte next = encode(shape, fluid);
+        if (previous == next) {
+            return;
+        }
+        cells[index] = next;
+
+        int section = sectionIndex(lx >> SECTION_SHIFT, ly >> SECTION_SHIFT, lz >> SECTION_SHIFT);
+        solidPerSection[section] += ((next & SOLID) != 0 ? 1 : 0) - ((previous & SOLID) != 0 ? 1 : 0);
+        fluidPerSection[section] += ((next & FLUID) != 0 ? 1 : 0) - ((previous & FLUID) != 0 ? 1 : 0);
+
+        int column = lz * sizeX + lx;
+        if (next != 0) {
+            columnTops[column] = Math.max(columnTops[column], y + 1);
+        } else if (columnTops[column] == y + 1) {
+            columnTops[column] = rescanColumn(lx, ly - 1, lz);
+        }
+    }
+
+    /**
+     * 用完整方块填充长方体区域（含两端）
+     */
+    public void fillSolid(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    setBlock(x, y, z, true, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否有碰撞形状（完整方块或非完整形状）
+     */
+    public boolean isSolid(int x, int y, int z) {
+        return (cell(x, y, z) & SOLID) != 0;
+    }
+
+    /**
+     * 方块的碰撞形状（没有碰撞时为 VoxelShapes.empty()）
+     */
+    public VoxelShape getShape(int x, int y, int z) {
+        Shape shape = shapeOf(cell(x, y, z));
+        return shape != null ? shape.shape : VoxelShapes.empty();
+    }
+
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    public int getOriginZ() {
+        return originZ;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    /**
+     * 按布局文本格式写出整个网格（空气不写出）
+     */
+    public void writeLayout(Writer writer) throws IOException {
+        writer.write(String.format(Locale.ROOT, "grid %d %d %d %d %d %d%n", originX, originY, originZ, sizeX, sizeY, sizeZ));
+        for (int ly = 0; ly < sizeY; ly++) {
+            for (int lz = 0; lz < sizeZ; lz++) {
+                int lx = 0;
+                while (lx < sizeX) {
+                    byte kind = cells[cellIndex(lx, ly, lz)];
+                    int runEnd = lx;
+                    while (runEnd + 1 < sizeX && cells[cellIndex(runEnd + 1, ly, lz)] == kind) {
+                        runEnd++;
+                    }
+                    if (kind != 0) {
+                        writer.write(String.format(Locale.ROOT, "%s %d %d %d %d%n", kindName(kind),
+                                originX + lx, originY + ly, originZ + lz, originX + runEnd));
+                    }
+                    lx = runEnd + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取 {@link #writeLayout} 写出的布局
+     *
+     * @throws IOException 读取失败或格式错误
+     */
+    public static VoxelGridWorld readLayout(BufferedReader reader) throws IOException {
+        VoxelGridWorld world = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            try {
+                if (parts[0].equals("grid") && parts.length == 7 && world == null) {
+                    world = new VoxelGridWorld(
+                            Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]),
+                            Integer.parseInt(parts[4]), Integer.parseInt(parts[5]), Integer.parseInt(parts[6]));
+                    continue;
+                }
+                byte kind = kindOf(parts[0]);
+                if (kind == 0 || parts.length != 5 || world == null) {
+                    throw new IOException("Malformed layout line " + lineNumber + ": " + line);
+                }
+                Shape shape = shapeOf(kind);
+                boolean fluid = (kind & FLUID) != 0;
+                int y = Integer.parseInt(parts[2]);
+                int z = Integer.parseInt(parts[3]);
+                for (int x = Integer.parseInt(parts[1]), endX = Integer.parseInt(parts[4]); x <= endX; x++) {
+                    world.setBlock(x, y, z, shape, fluid);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed layout line " + lineNumber + ": " + line, e);
+            }
+        }
+        if (world == null) {
+            throw new IOException("Layout has no grid line");
+        }
+        return world;
+    }
+
+    private static byte encode(Shape shape, boolean fluid) {
+        int kind = fluid ? FLUID : 0;
+        if (shape != null) {
+            kind |= SOLID | (shape.ordinal() << SHAPE_SHIFT);
+        }
+        return (byte) kind;
+    }
+
+    private static Shape shapeOf(byte kind) {
+        return (kind & SOLID) != 0 ? Shape.VALUES[(kind & 0xFF) >>> SHAPE_SHIFT] : null;
+    }
+
+    private static String kindName(byte kind) {
+        Shape shape = shapeOf(kind);
+        if (shape == null) {
+            return "fluid";
+        }
+        if (shape == Shape.FULL_CUBE) {
+            return (kind & FLUID) != 0 ? "waterlogged" : "solid";
+        }
+        return (kind & FLUID) != 0 ? WATERLOGGED_PREFIX + shape.layoutName : shape.layoutName;
+    }
+
+    private static byte kindOf(String name) {
+        if (name.equals("fluid")) {
+            return FLUID;
+        }
+        if (name.equals("waterlogged")) {
+            return encode(Shape.FULL_CUBE, true);
+        }
+        boolean fluid = name.startsWith(WATERLOGGED_PREFIX);
+        String shapeName = fluid ? name.substring(WATERLOGGED_PREFIX.length()) : name;
+        for (Shape shape : Shape.VALUES) {
+            if (shape.layoutName.equals(shapeName) && !(fluid && shape == Shape.FULL_CUBE)) {
+                return encode(shape, fluid);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public CollisionWorld open() {
+        return this;
+    }
+
+    @Override
+    public boolean raycast(double startX, double startY, double startZ,
+                           double endX, double endY, double endZ,
+                           double[] hitOut) {
+        return SegmentRaycaster.traverse(this, startX, startY, startZ, endX, endY, endZ, hitOut);
+    }
+
+    @Override
+    public boolean hitVoxel(int blockX, int blockY, int blockZ,
+                            double startX, double startY, double startZ,
+                            double endX, double endY, double endZ,
+                            double[] hitOut) {
+        Shape shape = shapeOf(cell(blockX, blockY, blockZ));
+        if (shape == null) {
+            return false;
+        }
+        if (shape == Shape.FULL_CUBE) {
+            return SegmentRaycaster.raycastFullCube(blockX, blockY, blockZ,
+                    startX, startY, startZ, endX, endY, endZ, hitOut);
+        }
+        return SegmentRaycaster.hitShape(shape.shape, blockX, blockY, blockZ,
+                startX, startY, startZ, endX, endY, endZ, hitOut);
+    }
+
+    @Override
+    public boolean isInFluid(double x, double y, double z) {
+        return (cell(floor(x), floor(y), floor(z)) & FLUID) != 0;
+    }
+
+    @Override
+    public boolean isRegionClear(double minX, double minY, double minZ,
+                                 double maxX, double maxY, double maxZ,
+                                 boolean requireNoFluid) {
+        int minLx = Math.max(0, floor(minX) - originX);
+        int minLy = Math.max(0, floor(minY) - originY);
+        int minLz = Math.max(0, floor(minZ) - originZ);
+        int maxLx = Math.min(sizeX - 1, floor(maxX) - originX);
+        int maxLy = Math.min(sizeY - 1, floor(maxY) - originY);
+        int maxLz = Math.min(sizeZ - 1, floor(maxZ) - originZ);
+        if (minLx > maxLx || minLy > maxLy || minLz > maxLz) {
+            return true;  // 完全在网格之外：全是空气
+        }
+
+        for (int sx = minLx >> SECTION_SHIFT; sx <= maxLx >> SECTION_SHIFT; sx++) {
+            for (int sy = minLy >> SECTION_SHIFT; sy <= maxLy >> SECTION_SHIFT; sy++) {
+                for (int sz = minLz >> SECTION_SHIFT; sz <= maxLz >> SECTION_SHIFT; sz++) {
+                    int section = sectionIndex(sx, sy, sz);
+                    if (solidPerSection[section] > 0 || (requireNoFluid && fluidPerSection[section] > 0)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isAboveTerrain(double minX, double minZ, double maxX, double maxZ, double minY) {
+        int minLx = Math.max(0, floor(minX) - originX);
+        int minLz = Math.max(0, floor(minZ) - originZ);
+        int maxLx = Math.min(sizeX - 1, floor(maxX) - originX);
+        int maxLz = Math.min(sizeZ - 1, floor(maxZ) - originZ);
+        if (minLx > maxLx || minLz > maxLz) {
+            return true;
+        }
+        if ((long) (maxLx - minLx + 1) * (maxLz - minLz + 1) > MAX_TERRAIN_COLUMNS) {
+            return false;
+        }
+
+        for (int lz = minLz; lz <= maxLz; lz++) {
+            for (int lx = minLx; lx <= maxLx; lx++) {
+                int top = columnTops[lz * sizeX + lx];
+                if (top != NO_TOP && minY < top) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private byte cell(int x, int y, int z) {
+        int lx = x - originX;
+        int ly = y - originY;
+        int lz = z - originZ;
+        return contains(lx, ly, lz) ? cells[cellIndex(lx, ly, lz)] : 0;
+    }
+
+    private int rescanColumn(int lx, int startLy, int lz) {
+        for (int ly = startLy; ly >= 0; ly--) {
+            if (cells[cellIndex(lx, ly, lz)] != 0) {
+                return originY + ly + 1;
+            }
+        }
+        return NO_TOP;
+    }
+
+    private boolean contains(int lx, int ly, int lz) {
+        return lx >= 0 && lx < sizeX && ly >= 0 && ly < sizeY && lz >= 0 && lz < sizeZ;
+    }
+
+    private int cellIndex(int lx, int ly, int lz) {
+        return (ly * sizeZ + lz) * sizeX + lx;
+    }
+
+    private int sectionIndex(int sx, int sy, int sz) {
+        return (sy * sectionsZ + sz) * sectionsX + sx;
+    }
+
+    private static int floor(double value) {
+        int i = (int) value;
+        return value < (double) i ? i - 1 : i;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.playerhighlight.mixin;
+
+import com.example.playerhighlight.OutlineTarget;
+import net.minecraft.entity.Entity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * 实体发光轮廓 Mixin
+ *
+ * 被透视的玩家与被追踪的弹道显示发光轮廓。是否发光与轮廓颜色作为字段直接存放在实体上（见 OutlineTarget），
+ * 由玩家透视与弹道追踪器在状态变化时设置；这两个方法每帧对每个实体调用，这里只读字段。
+ */
+@Mixin(Entity.class)
+public class EntityOutlineMixin implements OutlineTarget {
+
+    @Unique
+    private boolean playerhighlight$outlined = false;
+
+    @Unique
+    private int playerhighlight$outlineColor = 0xFFFFFF;
+
+    @Override
+    public boolean playerhighlight$isOutlined() {
+        return playerhighlight$outlined;
+    }
+
+    @Override
+    public int playerhighlight$getOutlineColor() {
+        return playerhighlight$outlineColor;
+    }
+
+    @Override
+    public void playerhighlight$setOutline(boolean outlined, int color) {
+        this.playerhighlight$outlined = outlined;
+        this.playerhighlight$outlineColor = color;
+    }
+
+    @Inject(method = "isGlowing()Z", at = @At("HEAD"), cancellable = true)
+    private void onIsGlowing(CallbackInfoReturnable<Boolean> cir) {
+        if (playerhighlight$outlined) {
+            cir.setReturnValue(true);
+        }
+    }
+
+    @Inject(method = "getTeamColorValue()I", at = @At("HEAD"), cancellable = true)
+    private void onGetTeamColorValue(CallbackInfoReturnable<Integer> cir) {
+        if (playerhighlight$outlined) {
+            cir.setReturnValue(playerhighlight$outlineColor);
+        }
+    }
+}
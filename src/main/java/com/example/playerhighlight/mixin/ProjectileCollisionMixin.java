@@ -24,6 +24,9 @@ public class ProjectileCollisionMixin {
         }
 
         Entity self = (Entity) (Object) this;
+        if (!self.getWorld().isClient) {
+            return;  // 单人模式下集成服务器线程也会走到这里；追踪状态只属于客户端线程
+        }
         boolean isTrackable = self instanceof ArrowEntity
                 || self instanceof SpectralArrowEntity
                 || self instanceof TridentEntity
@@ -33,7 +36,7 @@ public class ProjectileCollisionMixin {
             return;
         }
 
-        ProjectileTrackerClient.markProjectileAsLanded(self.getUuid(), hitResult.getPos());
+        ProjectileTrackerClient.markProjectileAsLanded(self.getId(), hitResult.getPos());
     }
 }
 
@@ -0,0 +1,29 @@
+package com.example.playerhighlight.mixin;
+
+import com.example.playerhighlight.BowPreviewClient;
+import com.example.playerhighlight.CollisionSnapshot;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * 客户端方块变化（服务器方块更新/区块增量更新/本地预测放置）时使碰撞快照失效、更新列高度，
+ * 并移除弓箭预瞄缓存中经过该方块的预测。
+ */
+@Mixin(World.class)
+public class WorldBlockChangeMixin {
+
+    @Inject(method = "onBlockChanged", at = @At("HEAD"))
+    private void onBlockChanged(BlockPos pos, BlockState oldBlock, BlockState newBlock, CallbackInfo ci) {
+        World self = (World) (Object) this;
+        if (!self.isClient) {
+            return;
+        }
+        CollisionSnapshot.onBlockChanged(self, pos, newBlock);
+        BowPreviewClient.onBlockChanged(self, pos);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.playerhighlight;
+
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.BlockView;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SegmentRaycaster 的离线回归测试
+ *
+ * 在手写的地形布局（src/test/resources/layouts，格式见 VoxelGridWorld）上生成固定种子的弹道线段，
+ * 用 VoxelGridWorld（SegmentRaycaster 的体素遍历、完整方块求交与非完整形状回退）和原版 BlockView.raycast + VoxelShape#raycast
+ * 分别检测，要求命中与否及命中位置逐位一致。partial_shapes 布局覆盖台阶、栅栏柱、楼梯与地毯等非完整形状。
+ */
+class SegmentRaycasterTest {
+
+    private static final int RANDOM_SEGMENTS = 20000;
+    private static final int SNAPPED_SEGMENTS = 20000;
+    private static final double MAX_SEGMENT_LENGTH = 3.0;
+    private static final int MAX_REPORTED_MISMATCHES = 5;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"bridge_duel", "pillars", "pool_steps", "partial_shapes"})
+    void matchesVanillaOnLayout(String layout) throws IOException {
+        VoxelGridWorld world = loadLayout(layout);
+        Random random = new Random(layout.hashCode());
+        Comparison comparison = new Comparison(world);
+
+        // 任意方向的短线段
+        for (int i = 0; i < RANDOM_SEGMENTS; i++) {
+            double sx = randomCoordinate(random, world.getOriginX(), world.getSizeX());
+            double sy = randomCoordinate(random, world.getOriginY(), world.getSizeY());
+            double sz = randomCoordinate(random, world.getOriginZ(), world.getSizeZ());
+            double dx = random.nextGaussian();
+            double dy = random.nextGaussian();
+            double dz = random.nextGaussian();
+            double norm = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (norm < 1.0e-9) {
+                continue;
+            }
+            double length = random.nextDouble() * MAX_SEGMENT_LENGTH;
+            comparison.check(sx, sy, sz, sx + dx / norm * length, sy + dy / norm * length, sz + dz / norm * length);
+        }
+
+        // 起终点落在方块面/棱上、沿坐标轴或 45° 的线段（遍历顺序与边界判定最容易出错的情况）
+        for (int i = 0; i < SNAPPED_SEGMENTS; i++) {
+            double sx = snap(randomCoordinate(random, world.getOriginX(), world.getSizeX()));
+            double sy = snap(randomCoordinate(random, world.getOriginY(), world.getSizeY()));
+            double sz = snap(randomCoordinate(random, world.getOriginZ(), world.getSizeZ()));
+            double ex = sx + (random.nextInt(7) - 3) * 0.5;
+            double ey = sy + (random.nextInt(7) - 3) * 0.5;
+            double ez = sz + (random.nextInt(7) - 3) * 0.5;
+            comparison.check(sx, sy, sz, ex, ey, ez);
+        }
+
+        assertTrue(comparison.hits > 0, "layout " + layout + " produced no hits");
+        if (layout.equals("partial_shapes")) {
+            assertTrue(comparison.partialHits > 0, "layout " + layout + " produced no partial-shape hits");
+        }
+        assertEquals(0, comparison.mismatches,
+                () -> layout + ": " + comparison.mismatches + "/" + comparison.segments + " mismatches\n"
+                        + String.join("\n", comparison.details));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"pool_steps", "partial_shapes"})
+    void layoutRoundTrips(String layout) throws IOException {
+        VoxelGridWorld world = loadLayout(layout);
+        String written = write(world);
+        VoxelGridWorld reread = VoxelGridWorld.readLayout(new BufferedReader(new StringReader(written)));
+        assertEquals(written, write(reread));
+    }
+
+    private static VoxelGridWorld loadLayout(String name) throws IOException {
+        InputStream stream = SegmentRaycasterTest.class.getResourceAsStream("/layouts/" + name + ".txt");
+        assertNotNull(stream, "missing layout " + name);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return VoxelGridWorld.readLayout(reader);
+        }
+    }
+
+    private static String write(VoxelGridWorld world) throws IOException {
+        StringWriter writer = new StringWriter();
+        world.writeLayout(writer);
+        return writer.toString();
+    }
+
+    /** 网格范围向外各扩 1 格内的随机坐标（覆盖网格边界外的空气） */
+    private static double randomCoordinate(Random random, int origin, int size) {
+        return origin - 1.0 + random.nextDouble() * (size + 2.0);
+    }
+
+    private static double snap(double coordinate) {
+        return Math.round(coordinate * 2.0) * 0.5;
+    }
+
+    /**
+     * 对比累计结果；原版一侧使用 BlockView.raycast 的体素遍历与各方块碰撞形状的 VoxelShape#raycast
+     */
+    private static final class Comparison {
+        private final VoxelGridWorld world;
+        private final double[] hit = new double[3];
+        int segments;
+        int hits;
+        int partialHits;
+        int mismatches;
+        final List<String> details = new ArrayList<>();
+
+        Comparison(VoxelGridWorld world) {
+            this.world = world;
+        }
+
+        void check(double sx, double sy, double sz, double ex, double ey, double ez) {
+            Vec3d start = new Vec3d(sx, sy, sz);
+            Vec3d end = new Vec3d(ex, ey, ez);
+            BlockHitResult vanilla = BlockView.raycast(start, end, world,
+                    (grid, pos) -> grid.getShape(pos.getX(), pos.getY(), pos.getZ()).raycast(start, end, pos),
+                    grid -> null);
+            boolean fastHit = world.raycast(sx, sy, sz, ex, ey, ez, hit);
+
+            segments++;
+            if (vanilla != null) {
+                hits++;
+                BlockPos pos = vanilla.getBlockPos();
+                if (world.getShape(pos.getX(), pos.getY(), pos.getZ()) != VoxelShapes.fullCube()) {
+                    partialHits++;
+                }
+            }
+            boolean match = (vanilla != null) == fastHit;
+            if (match && vanilla != null) {
+                Vec3d expected = vanilla.getPos();
+                match = expected.x == hit[0] && expected.y == hit[1] && expected.z == hit[2];
+            }
+            if (!match) {
+                mismatches++;
+                if (details.size() < MAX_REPORTED_MISMATCHES) {
+                    details.add(String.format("(%s, %s, %s) -> (%s, %s, %s) vanilla=%s fast=%s",
+                            sx, sy, sz, ex, ey, ez,
+                            vanilla != null ? vanilla.getPos() : "MISS",
+                            fastHit ? "(" + hit[0] + ", " + hit[1] + ", " + hit[2] + ")" : "MISS"));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.playerhighlight;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TrajectoryBuffer#simplify 的回归测试
+ *
+ * 简化后按 tick 线性插值（与 ProjectilePrediction#samplePositionAtTick 相同）得到的位置，
+ * 与逐 tick 轨迹的偏差不得超过容差；减速的直线轨迹不能只剩两端。
+ */
+class TrajectoryBufferTest {
+
+    private static final double TOLERANCE = 0.15;
+
+    @Test
+    void fireballKeepsTimingOnDeceleratingLine() {
+        // 无重力、阻力 0.95 的火球：轨迹是直线，但每 tick 的位移逐渐缩短
+        double[] reference = fly(1.0, 0.0, 0.95, 0.0, 100);
+        TrajectoryBuffer buffer = toBuffer(reference);
+        buffer.simplify(TOLERANCE);
+
+        assertTrue(buffer.size() > 2, "decelerating line collapsed to " + buffer.size() + " points");
+        assertWithinTolerance(reference, buffer);
+    }
+
+    @Test
+    void arrowArcStaysWithinToleranceAndBeatsFixedInterval() {
+        // 满拉弓 45° 吊射：速度 3，阻力 0.99，重力 0.05
+        double angle = Math.toRadians(45.0);
+        double[] reference = fly(3.0 * Math.cos(angle), 3.0 * Math.sin(angle), 0.99, 0.05, 120);
+        TrajectoryBuffer buffer = toBuffer(reference);
+        buffer.simplify(TOLERANCE);
+
+        assertWithinTolerance(reference, buffer);
+        int fixedIntervalPoints = 120 / PhysicsSimulator.TRAJECTORY_SAVE_INTERVAL + 2;
+        assertTrue(buffer.size() < fixedIntervalPoints,
+                buffer.size() + " points, fixed interval keeps " + fixedIntervalPoints);
+    }
+
+    /**
+     * 竖直平面内的逐 tick 轨迹（x, y 交替存放，下标为 tick）
+     */
+    private static double[] fly(double velX, double velY, double drag, double gravity, int ticks) {
+        double[] positions = new double[(ticks + 1) * 2];
+        double x = 0.0;
+        double y = 0.0;
+        for (int tick = 1; tick <= ticks; tick++) {
+            x += velX;
+            y += velY;
+            positions[tick * 2] = x;
+            positions[tick * 2 + 1] = y;
+            velX *= drag;
+            velY = velY * drag - gravity;
+        }
+        return positions;
+    }
+
+    private static TrajectoryBuffer toBuffer(double[] positions) {
+        TrajectoryBuffer buffer = new TrajectoryBuffer();
+        for (int tick = 0; tick < positions.length / 2; tick++) {
+            buffer.add(positions[tick * 2], positions[tick * 2 + 1], 0.0, tick);
+        }
+        return buffer;
+    }
+
+    private static void assertWithinTolerance(double[] reference, TrajectoryBuffer buffer) {
+        int segment = 0;
+        for (int tick = 0; tick < reference.length / 2; tick++) {
+            while (buffer.getTick(segment + 1) < tick) {
+                segment++;
+            }
+            int startTick = buffer.getTick(segment);
+            double t = (double) (tick - startTick) / (buffer.getTick(segment + 1) - startTick);
+            double x = buffer.getX(segment) + (buffer.getX(segment + 1) - buffer.getX(segment)) * t;
+            double y = buffer.getY(segment) + (buffer.getY(segment + 1) - buffer.getY(segment)) * t;
+            double error = Math.hypot(x - reference[tick * 2], y - reference[tick * 2 + 1]);
+            assertTrue(error <= TOLERANCE + 1.0e-9, "tick " + tick + " off by " + error);
+        }
+    }
+}